@@ -0,0 +1,36 @@
+package src.agt;
+
+import jason.asSemantics.*;
+import jason.asSyntax.*;
+import src.env.Env;
+import src.model.TerrainView;
+
+/**
+ * src.agt.CellAtAction(Coord, Terrain[, Timestamp]) succeeds if the agent knows the cell at Coord,
+ * unifying its terrain and when it was observed. Coord must be bound.
+ * It reads the view of Mars of the agent, which is where its knowledge is stored.
+ */
+public class CellAtAction extends DefaultInternalAction {
+
+    @Override
+    public int getMinArgs() {
+        return 2;
+    }
+
+    @Override
+    public int getMaxArgs() {
+        return 3;
+    }
+
+    @Override
+    public Object execute(TransitionSystem ts, Unifier un, Term[] args) throws Exception {
+        checkArguments(args);
+        final var view = Env.instance().viewOf(ts.getAgArch().getAgName()).marsView();
+        final var coord = Env.Lit.toCoordinates(args[0]);
+        if (!(view.terrainAt(coord) instanceof TerrainView.Known(var terrain))) {
+            return false;
+        }
+        return un.unifies(args[1], Env.Lit.fromTerrain(terrain))
+                && (args.length < 3 || un.unifies(args[2], ASSyntax.createNumber(view.timestampAt(coord))));
+    }
+}
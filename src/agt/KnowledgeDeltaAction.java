@@ -0,0 +1,21 @@
+package src.agt;
+
+import jason.asSemantics.*;
+import jason.asSyntax.*;
+import src.env.Env;
+
+/**
+ * KnowledgeDeltaAction(Peer, Cells) unifies Cells with a CellBatch (wrapped in an ObjectTerm) of the cells changed
+ * since knowledge was last sent to Peer, it fails if there is nothing new.
+ * Calling it means those cells are going to be sent, next time they will not be included.
+ */
+public class KnowledgeDeltaAction extends DefaultInternalAction {
+
+    @Override
+    public Object execute(TransitionSystem ts, Unifier un, Term[] args) throws Exception {
+        final var peer = args[0].isString() ? ((StringTerm) args[0]).getString() : args[0].toString();
+
+        final var cells = Env.instance().viewOf(ts.getAgArch().getAgName()).changesToSend(peer);
+        return !cells.isEmpty() && un.unifies(args[1], new ObjectTermImpl(cells));
+    }
+}
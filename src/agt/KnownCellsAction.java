@@ -0,0 +1,49 @@
+package src.agt;
+
+import java.util.HashSet;
+
+import jason.asSemantics.*;
+import jason.asSyntax.*;
+import src.env.Env;
+import src.model.Terrain;
+
+/**
+ * src.agt.KnownCellsAction(Terrains, Cells) unifies Cells with the list of cell(Coord, Terrain, Timestamp)
+ * the agent knows having one of the given Terrains (e.g. [sample, miningSpot]).
+ */
+public class KnownCellsAction extends DefaultInternalAction {
+
+    @Override
+    public int getMinArgs() {
+        return 2;
+    }
+
+    @Override
+    public int getMaxArgs() {
+        return 2;
+    }
+
+    @Override
+    public Object execute(TransitionSystem ts, Unifier un, Term[] args) throws Exception {
+        checkArguments(args);
+        if (!args[0].isList()) {
+            throw new IllegalArgumentException("Argument 0 must be a ListTerm");
+        }
+        final var terrains = new HashSet<Terrain>();
+        for (final var t : (ListTerm) args[0]) {
+            terrains.add(Env.Lit.toTerrain(t));
+        }
+
+        final var view = Env.instance().viewOf(ts.getAgArch().getAgName()).marsView();
+        final var found = view.cellsWith(terrains);
+        final ListTerm cells = new ListTermImpl();
+        var tail = cells;
+        for (int i = 0; i < found.size(); i++) {
+            tail = tail.append(ASSyntax.createStructure("cell",
+                    Env.Lit.fromCoordinates(found.coordinates(i)),
+                    Env.Lit.fromTerrain(found.terrain(i)),
+                    ASSyntax.createNumber(found.timestamp(i))));
+        }
+        return un.unifies(args[1], cells);
+    }
+}
@@ -0,0 +1,50 @@
+package src.agt;
+
+import jason.asSemantics.*;
+import jason.asSyntax.*;
+import src.env.Env;
+import src.model.Rover;
+
+/**
+ * src.agt.TowardsBaseAction(Coord, Dir, Cost) succeeds if the way from Coord to the base is known (by anyone,
+ * see src.model.DistanceField), unifying the energy the agent needs to get there along the shortest way
+ * and the direction of its first step: a cell one step closer to the base and free of rovers,
+ * or none if Coord is in the base or every such cell is taken. Coord must be bound; if it is not walkable
+ * (e.g. a mining spot) the way goes through its nearest walkable neighbour.
+ */
+public class TowardsBaseAction extends DefaultInternalAction {
+
+    private static final Atom NONE = ASSyntax.createAtom("none");
+
+    @Override
+    public int getMinArgs() {
+        return 3;
+    }
+
+    @Override
+    public int getMaxArgs() {
+        return 3;
+    }
+
+    @Override
+    public Object execute(TransitionSystem ts, Unifier un, Term[] args) throws Exception {
+        checkArguments(args);
+        final var env = Env.instance();
+        final var mars = env.mars();
+        // Also applies the cells saved by the agent so far
+        final var agent = env.viewOf(ts.getAgArch().getAgName());
+        final var moveCost = agent instanceof Rover r ? r.movementEnergyCost() : env.settings().roverMovementEnergyCost();
+        final var coord = Env.Lit.toCoordinates(args[0]);
+        final var way = mars.distanceToBase().wayToBase(coord);
+        if (way.isEmpty()) {
+            return false;
+        }
+        final Term direction = way.get().steps().stream()
+                .filter(d -> mars.roverAtCoordinates(coord.apply(d)).isEmpty())
+                .findFirst()
+                .<Term>map(Env.Lit::fromDirection)
+                .orElse(NONE);
+        return un.unifies(args[1], direction)
+                && un.unifies(args[2], ASSyntax.createNumber(way.get().distance() * moveCost));
+    }
+}
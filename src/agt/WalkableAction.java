@@ -0,0 +1,32 @@
+package src.agt;
+
+import jason.asSemantics.*;
+import jason.asSyntax.*;
+import src.env.Env;
+import src.model.Mars;
+import src.model.TerrainView;
+
+/**
+ * src.agt.WalkableAction(Coord) succeeds if the agent knows that the terrain at Coord can be walked on.
+ * Rovers are not taken into account.
+ */
+public class WalkableAction extends DefaultInternalAction {
+
+    @Override
+    public int getMinArgs() {
+        return 1;
+    }
+
+    @Override
+    public int getMaxArgs() {
+        return 1;
+    }
+
+    @Override
+    public Object execute(TransitionSystem ts, Unifier un, Term[] args) throws Exception {
+        checkArguments(args);
+        final var view = Env.instance().viewOf(ts.getAgArch().getAgName()).marsView();
+        return view.terrainAt(Env.Lit.toCoordinates(args[0])) instanceof TerrainView.Known(var terrain)
+                && Mars.isWalkable(terrain);
+    }
+}
@@ -0,0 +1,182 @@
+package src.env;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Discrete event scheduler driving a simulated clock (in ms).
+ * Scheduled completions run one at a time on the scheduler thread, in simulated time order.
+ * Simulated time flows timeScale times faster than wall time.
+ *
+ * With an infinite time scale the clock jumps straight to the next completion. Each agent then has its own
+ * clock, the time its last action completed at, and its actions start from it: actions of different agents
+ * overlap as they would in real time. An action is completed only once every agent that may still act
+ * before it has an action pending, so the order of completions does not depend on how fast agents reason.
+ * An agent which does not act for IDLE_AFTER_MS of wall time (e.g. a rover out of battery) is not waited
+ * for anymore, when it acts again its action starts from the current time.
+ */
+public class ActionScheduler {
+
+    private static final long IDLE_AFTER_MS = 250;
+
+    private record Event(String agent, long dueAt, long order, Runnable completion) {
+    }
+
+    private static final class AgentClock {
+        private long time;
+        private int pending = 0;
+        private long reasoningSince = System.nanoTime();
+        private boolean idle = false;
+
+        private AgentClock(long time) {
+            this.time = time;
+        }
+    }
+
+    private final Logger logger = Logger.getLogger("robotsOnMars." + ActionScheduler.class.getName());
+    private final double timeScale;
+    private final PriorityQueue<Event> events = new PriorityQueue<>(
+            Comparator.comparingLong(Event::dueAt).thenComparingLong(Event::order));
+    // Only used with an infinite time scale
+    private final Map<String, AgentClock> agents = new HashMap<>();
+    private long scheduled = 0;
+    private long lastCompletion = 0;
+    private long startNanos = System.nanoTime();
+    private Thread worker;
+
+    public ActionScheduler(double timeScale) {
+        if (!(timeScale > 0)) {
+            throw new IllegalArgumentException("Time scale must be positive: " + timeScale);
+        }
+        this.timeScale = timeScale;
+    }
+
+    synchronized public void start() {
+        if (worker == null) {
+            startNanos = System.nanoTime();
+            worker = new Thread(this::run, "action-scheduler");
+            worker.setDaemon(true);
+            worker.start();
+        }
+    }
+
+    synchronized public void stop() {
+        if (worker != null) {
+            worker.interrupt();
+            worker = null;
+        }
+    }
+
+    /** Current simulated time in ms. */
+    synchronized public long now() {
+        if (isInfinite()) {
+            return lastCompletion;
+        }
+        return Math.max(lastCompletion, (long) ((System.nanoTime() - startNanos) / 1e6 * timeScale));
+    }
+
+    /** Actions scheduled and not completed yet. */
+    synchronized public int pending() {
+        return events.size();
+    }
+
+    /**
+     * Tells that the agent will schedule actions, so that no action gets completed after the current time
+     * before it schedules its first one (or becomes idle).
+     */
+    synchronized public void register(String agent) {
+        if (isInfinite()) {
+            clockOf(agent);
+        }
+    }
+
+    /** Runs completion once durationMs of simulated time have passed since the agent's action started. */
+    synchronized public void schedule(String agent, long durationMs, Runnable completion) {
+        var startAt = now();
+        if (isInfinite()) {
+            final var clock = clockOf(agent);
+            if (clock.idle) {
+                clock.idle = false;
+                clock.time = Math.max(clock.time, lastCompletion);
+            }
+            clock.pending++;
+            startAt = clock.time;
+        }
+        // Never in the past, e.g. a second action of an agent which has already one pending
+        events.add(new Event(agent, Math.max(startAt + durationMs, lastCompletion), scheduled++, completion));
+        notifyAll();
+    }
+
+    private boolean isInfinite() {
+        return Double.isInfinite(timeScale);
+    }
+
+    private AgentClock clockOf(String agent) {
+        return agents.computeIfAbsent(agent, a -> new AgentClock(lastCompletion));
+    }
+
+    private void run() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                final var next = takeNextDue();
+                try {
+                    next.completion().run();
+                } catch (RuntimeException e) {
+                    logger.log(Level.SEVERE, "Scheduled action failed", e);
+                }
+            }
+        } catch (InterruptedException e) {
+            // Stopped
+        }
+    }
+
+    synchronized private Event takeNextDue() throws InterruptedException {
+        while (true) {
+            if (events.isEmpty()) {
+                wait();
+                continue;
+            }
+            final var next = events.peek();
+            final var waitMs = isInfinite()
+                    ? waitForAgentsActingBefore(next.dueAt())
+                    : (long) Math.ceil((next.dueAt() - now()) / timeScale);
+            if (waitMs > 0) {
+                // Woken up early if an event gets scheduled
+                wait(waitMs);
+                continue;
+            }
+            events.poll();
+            lastCompletion = Math.max(lastCompletion, next.dueAt());
+            if (isInfinite()) {
+                final var clock = clockOf(next.agent());
+                clock.time = Math.max(clock.time, next.dueAt());
+                clock.pending--;
+                clock.reasoningSince = System.nanoTime();
+            }
+            return next;
+        }
+    }
+
+    // Wall time (ms) to wait for agents which are reasoning and may still schedule an action due before dueAt,
+    // 0 if there are none. Agents reasoning for longer than IDLE_AFTER_MS become idle.
+    private long waitForAgentsActingBefore(long dueAt) {
+        final var now = System.nanoTime();
+        var waitMs = 0L;
+        for (final var clock : agents.values()) {
+            if (clock.pending > 0 || clock.idle || clock.time >= dueAt) {
+                continue;
+            }
+            final var left = IDLE_AFTER_MS - (now - clock.reasoningSince) / 1_000_000;
+            if (left <= 0) {
+                clock.idle = true;
+            } else {
+                waitMs = waitMs == 0 ? left : Math.min(waitMs, left);
+            }
+        }
+        return waitMs;
+    }
+}
@@ -0,0 +1,166 @@
+package src.env;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import src.model.Mars;
+
+/**
+ * Headless run: watches the simulation until a stop condition is met,
+ * then writes a JSON summary and terminates the process.
+ */
+public class BatchRun {
+
+    private record ExploredSample(long simulatedTimeMs, double fraction) {
+    }
+
+    private static final long CHECK_PERIOD_MS = 100;
+    // Wall time with no action performed nor pending after which the run is stopped, e.g. every rover is
+    // stuck or out of battery and simulated time does not flow anymore
+    private static final long IDLE_STOP_AFTER_MS = 10_000;
+
+    private final Logger logger = Logger.getLogger("robotsOnMars." + BatchRun.class.getName());
+    private final Mars mars;
+    private final ActionScheduler scheduler;
+    private final SimulationOptions options;
+    private final LongAdder actions = new LongAdder();
+    private final LongAdder percepts = new LongAdder();
+    private final List<ExploredSample> explored = new ArrayList<>();
+    private final ScheduledExecutorService monitor = Executors.newSingleThreadScheduledExecutor(r -> {
+        final var t = new Thread(r, "batch-run-monitor");
+        t.setDaemon(true);
+        return t;
+    });
+    private long startNanos;
+    private long nextSampleAt = 0;
+    private long lastActions = 0;
+    private long lastActiveNanos;
+
+    public BatchRun(Mars mars, ActionScheduler scheduler, SimulationOptions options) {
+        this.mars = mars;
+        this.scheduler = scheduler;
+        this.options = options;
+    }
+
+    public void start() {
+        startNanos = System.nanoTime();
+        lastActiveNanos = startNanos;
+        monitor.scheduleAtFixedRate(this::check, CHECK_PERIOD_MS, CHECK_PERIOD_MS, TimeUnit.MILLISECONDS);
+    }
+
+    public void actionPerformed() {
+        actions.increment();
+    }
+
+    public void perceptsSent(int count) {
+        percepts.add(count);
+    }
+
+    private void check() {
+        try {
+            final var now = scheduler.now();
+            final var fraction = exploredFraction();
+            final var performed = actions.sum();
+            if (performed != lastActions || scheduler.pending() > 0) {
+                lastActions = performed;
+                lastActiveNanos = System.nanoTime();
+            }
+            if (now >= nextSampleAt) {
+                explored.add(new ExploredSample(now, fraction));
+                nextSampleAt = now + options.sampleEveryMs();
+            }
+            stopReason(now, fraction).ifPresent(this::finish);
+        } catch (RuntimeException e) {
+            logger.log(Level.SEVERE, "Batch run check failed", e);
+        }
+    }
+
+    private Optional<String> stopReason(long now, double fraction) {
+        if (options.stopWhenExplored() && fraction >= 1) {
+            return Optional.of("explored");
+        } else if (options.stopAtSamples().isPresent()
+                && mars.depositedSamples() >= options.stopAtSamples().getAsInt()) {
+            return Optional.of("samples");
+        } else if (options.timeBudgetMs().isPresent() && now >= options.timeBudgetMs().getAsLong()) {
+            return Optional.of("timeBudget");
+        } else if (options.wallTimeBudgetMs().isPresent()
+                && msSince(startNanos) >= options.wallTimeBudgetMs().getAsLong()) {
+            return Optional.of("wallTimeBudget");
+        } else if (msSince(lastActiveNanos) >= IDLE_STOP_AFTER_MS) {
+            return Optional.of("idle");
+        }
+        return Optional.empty();
+    }
+
+    private static long msSince(long nanos) {
+        return (System.nanoTime() - nanos) / 1_000_000;
+    }
+
+    private double exploredFraction() {
+        return mars.knownAreaSize() / (double) mars.area();
+    }
+
+    private void finish(String stopReason) {
+        final var now = scheduler.now();
+        explored.add(new ExploredSample(now, exploredFraction()));
+        final var summary = summary(stopReason, now);
+        try {
+            if (options.summaryPath().isPresent()) {
+                Files.writeString(Path.of(options.summaryPath().get()), summary);
+            } else {
+                System.out.println(summary);
+            }
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Could not write the summary", e);
+        }
+        System.exit(0);
+    }
+
+    private String summary(String stopReason, long simulatedTimeMs) {
+        final var wallTimeMs = msSince(startNanos);
+        final var wallTimeS = Math.max(wallTimeMs, 1) / 1000.0;
+        final var json = new StringBuilder("{\n");
+        json.append("  \"stopReason\": \"").append(stopReason).append("\",\n");
+        json.append("  \"seed\": ").append(options.seed()).append(",\n");
+        json.append("  \"wallTimeMs\": ").append(wallTimeMs).append(",\n");
+        json.append("  \"simulatedTimeMs\": ").append(simulatedTimeMs).append(",\n");
+        json.append("  \"actions\": ").append(actions.sum()).append(",\n");
+        json.append("  \"actionsPerSec\": ").append(jsonValue(actions.sum() / wallTimeS)).append(",\n");
+        json.append("  \"percepts\": ").append(percepts.sum()).append(",\n");
+        json.append("  \"perceptsPerSec\": ").append(jsonValue(percepts.sum() / wallTimeS)).append(",\n");
+        json.append("  \"samplesDeposited\": ").append(mars.depositedSamples()).append(",\n");
+        json.append("  \"exploredOverTime\": [");
+        for (var i = 0; i < explored.size(); i++) {
+            final var sample = explored.get(i);
+            json.append(i == 0 ? "\n" : ",\n")
+                    .append("    {\"simulatedTimeMs\": ").append(sample.simulatedTimeMs())
+                    .append(", \"fraction\": ").append(jsonValue(sample.fraction())).append("}");
+        }
+        json.append("\n  ],\n");
+        json.append("  \"config\": {");
+        final var config = new ArrayList<>(options.settings().byName().entrySet());
+        for (var i = 0; i < config.size(); i++) {
+            final var e = config.get(i);
+            json.append(i == 0 ? "\n" : ",\n")
+                    .append("    \"").append(e.getKey()).append("\": ").append(jsonValue(e.getValue()));
+        }
+        json.append("\n  }\n}\n");
+        return json.toString();
+    }
+
+    // JSON has no NaN nor infinities, they are written as strings (e.g. TIME_SCALE=Infinity)
+    private static String jsonValue(Object value) {
+        if (value instanceof Double d && !Double.isFinite(d) || value instanceof Float f && !Float.isFinite(f)) {
+            return "\"" + value + "\"";
+        }
+        return String.valueOf(value);
+    }
+}
@@ -1,7 +1,15 @@
 package src.env;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import javax.swing.SwingUtilities;
@@ -13,41 +21,47 @@ import jason.environment.Environment;
 import src.view.AppFrame;
 import src.view.ViewModel;
 import src.model.*;
+import src.utils.Metrics;
+import src.utils.Tuple;
 
 public class Env extends Environment {
     private Logger logger = Logger.getLogger("robotsOnMars." + Env.class.getName());
     private static Env instance;
-
-    private Mars mars = new Mars(
-            Config.MARS_SIZE,
-            Config.MARS_OBSTACLES_DENSITY,
-            Config.MARS_SAMPLES_DENSITY,
-            Config.MARS_MINING_SPOTS_DENSITY,
-            Config.MARS_BASE_SIZE,
-            Config.MARS_BASE_ANTENNA_RANGE);
+    // Last percepts sent to each agent, only used with DELTA_PERCEPTS
+    private final Map<String, List<Literal>> lastPercepts = new ConcurrentHashMap<>();
+    // Cells saved by each rover and not yet applied to its view of Mars, see flushSavedCells
+    private final Map<String, CellBatch.Builder> savedCells = new ConcurrentHashMap<>();
+    // Created in init from the options, which may override Config
+    private Settings settings = Settings.DEFAULTS;
+    private ActionScheduler scheduler;
+    private Mars mars;
+    private Optional<BatchRun> batchRun = Optional.empty();
+    private Optional<Path> checkpointPath = Optional.empty();
+    private Optional<ScheduledExecutorService> checkpoints = Optional.empty();
+    private Optional<ActionJournal> journal = Optional.empty();
 
     private Rover simpleRoverNamed(String name) {
         return new SimpleRover(
                 name,
-                Config.ROVER_BATTERY_CAPACITY,
-                Config.ROVER_BATTERY_CAPACITY,
-                Config.ROVER_CAMERA_RANGE,
-                Config.ROVER_ANTENNA_RANGE,
-                Config.ROVER_MOVEMENT_ENERGY_COST,
-                Config.ROVER_CHARGING_ENERGY_AMOUNT);
+                settings.roverBatteryCapacity(),
+                settings.roverBatteryCapacity(),
+                settings.roverCameraRange(),
+                settings.roverAntennaRange(),
+                settings.roverMovementEnergyCost(),
+                settings.roverChargingEnergyAmount());
     }
 
     private Rover scientistRoverNamed(String name) {
         return new ScientistRover(
                 name,
-                Config.ROVER_BATTERY_CAPACITY,
-                Config.ROVER_BATTERY_CAPACITY,
-                Config.ROVER_CAMERA_RANGE,
-                Config.ROVER_ANTENNA_RANGE,
-                Config.ROVER_MOVEMENT_ENERGY_COST,
-                Config.ROVER_CHARGING_ENERGY_AMOUNT,
-                Config.SCIENTIST_SAMPLES_CAPACITY,
-                Config.SCIENTIST_MINING_SAMPLE_ENERGY_COST);
+                settings.roverBatteryCapacity(),
+                settings.roverBatteryCapacity(),
+                settings.roverCameraRange(),
+                settings.roverAntennaRange(),
+                settings.roverMovementEnergyCost(),
+                settings.roverChargingEnergyAmount(),
+                settings.scientistSamplesCapacity(),
+                settings.scientistMiningSampleEnergyCost());
     }
 
     /** Called before the MAS execution with the args informed in .mas2j */
@@ -55,13 +69,88 @@ public class Env extends Environment {
     public void init(String[] args) {
         super.init(args);
         Env.instance = this;
+        final var options = SimulationOptions.parse(args);
+        settings = options.settings();
+        checkpointPath = options.checkpointPath().map(Path::of);
+        mars = checkpointPath.filter(Files::exists).map(this::resume)
+                .orElseGet(() -> new Mars(settings, options.seed()));
+        options.journalPath().map(Path::of).ifPresent(this::startJournal);
+        scheduler = new ActionScheduler(settings.timeScale());
+        mars.rovers().forEach(r -> scheduler.register(r.name()));
+        scheduler.start();
+        Metrics.startLogging();
+        checkpointPath.ifPresent(path -> startCheckpoints(options.checkpointEverySeconds()));
+
+        if (options.headless()) {
+            logger.info("Running headless with seed " + options.seed());
+            batchRun = Optional.of(new BatchRun(mars, scheduler, options));
+            batchRun.get().start();
+        } else {
+            SwingUtilities.invokeLater(() -> {
+                try {
+                    new AppFrame(new ViewModel(mars)).setVisible(true);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                    System.exit(1);
+                }
+            });
+        }
+    }
 
-        SwingUtilities.invokeLater(() -> {
+    // Starting over would overwrite the checkpoint with a new simulation, better to fail
+    private Mars resume(Path path) {
+        try {
+            final var resumed = Checkpoint.read(path, settings);
+            logger.info("Resumed from " + path + " with " + resumed.rovers().size() + " rovers");
+            return resumed;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot resume from " + path, e);
+        }
+    }
+
+    private void startJournal(Path path) {
+        try {
+            final var started = ActionJournal.start(mars, path);
+            journal = Optional.of(started);
+            // Headless runs end with System.exit, the last records must still be written
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> closeJournal(), "journal-close"));
+            logger.info("Journaling to " + path);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Could not start the journal " + path, e);
+        }
+    }
+
+    private void closeJournal() {
+        journal.ifPresent(j -> {
             try {
-                new AppFrame(new ViewModel(mars)).setVisible(true);
+                j.close();
             } catch (IOException e) {
-                e.printStackTrace();
-                System.exit(1);
+                logger.log(Level.WARNING, "Could not close the journal", e);
+            }
+        });
+    }
+
+    private void startCheckpoints(long everySeconds) {
+        final var executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            final var t = new Thread(r, "checkpoint");
+            t.setDaemon(true);
+            return t;
+        });
+        executor.scheduleWithFixedDelay(this::checkpoint, everySeconds, everySeconds, TimeUnit.SECONDS);
+        checkpoints = Optional.of(executor);
+    }
+
+    /** Writes the state of the simulation to the checkpoint file, with the cells saved by rovers so far. */
+    private void checkpoint() {
+        checkpointPath.ifPresent(path -> {
+            try {
+                List.copyOf(savedCells.keySet()).forEach(this::flushSavedCells);
+                final var start = System.nanoTime();
+                Checkpoint.write(mars, path);
+                logger.fine("Checkpoint written to " + path + " in " + (System.nanoTime() - start) / 1_000_000
+                        + " ms");
+            } catch (IOException | RuntimeException e) {
+                logger.log(Level.WARNING, "Could not write checkpoint to " + path, e);
             }
         });
     }
@@ -69,83 +158,132 @@ public class Env extends Environment {
     @Override
     public boolean executeAction(String agName, Structure action) {
         assert !agName.equals("base");
-        final var rover = spawnIfMissing(agName);
-        Optional<Action> actionToPerform = Optional.empty();
-        int timeToSleepMs = 0;
+        final var start = System.nanoTime();
+        try {
+            return execute(agName, action);
+        } finally {
+            Metrics.recordSince(start, "Env.executeAction", action.getFunctor(), agName);
+        }
+    }
+
+    // Timed actions never get here, the scheduler completes them (see scheduleAction)
+    private boolean execute(String agName, Structure action) {
+        spawnIfMissing(agName);
         if (action.getFunctor().equals(Lit.saveCellAction.getFunctor())) {
-            final var coord = Lit.toCoordinates(action.getTerm(0));
-            final var terrain = Lit.toTerrain(action.getTerm(1));
-            mars.updateMarsViewOf(rover, coord, terrain);
-        } else if (action.equals(Lit.exploreAction)) {
-            actionToPerform = Optional.of(new Action.Explore(rover));
-            timeToSleepMs = Config.MOVEMENT_DURATION_MS;
+            saveCell(agName, action);
+        } else {
+            logger.info("executing: " + action + ", but not implemented!");
+        }
+        return true;
+    }
+
+    /**
+     * Timed actions are not slept on: the scheduler completes them (performs them on Mars
+     * and gives the result back to the agent) once their duration has passed in simulated time.
+     */
+    @Override
+    public void scheduleAction(String agName, Structure action, Object infraData) {
+        if (agName.equals("base") || action.getFunctor().equals(Lit.saveCellAction.getFunctor())) {
+            super.scheduleAction(agName, action, infraData);
+            return;
+        }
+        final var rover = spawnIfMissing(agName);
+        timedActionOf(rover, action).ifPresentOrElse(
+                t -> scheduler.schedule(agName, t._2(), () -> {
+                    var result = false;
+                    try {
+                        result = mars.performAction(t._1());
+                        batchRun.ifPresent(BatchRun::actionPerformed);
+                        informAgsEnvironmentChanged();
+                    } finally {
+                        // The agent waits for this, it must be told even if something went wrong
+                        getEnvironmentInfraTier().actionExecuted(agName, action, result, infraData);
+                    }
+                }),
+                () -> super.scheduleAction(agName, action, infraData));
+    }
+
+    /**
+     * A rover saves every cell it sees, one by one. Instead of updating its view of Mars (and notifying
+     * the GUI) for each of them, saved cells are buffered and applied all together the next time the rover
+     * perceives or reads its view.
+     */
+    private void saveCell(String agName, Structure action) {
+        final var coord = Lit.toCoordinates(action.getTerm(0));
+        final var terrain = Lit.toTerrain(action.getTerm(1));
+        final var timestamp = Lit.toLong(action.getTerm(2));
+        savedCells.compute(agName, (k, cells) -> (cells == null ? new CellBatch.Builder() : cells)
+                .add(coord, terrain, timestamp));
+    }
+
+    private void flushSavedCells(String agName) {
+        final var cells = savedCells.remove(agName);
+        if (cells != null) {
+            mars.updateMarsViewOf(spawnIfMissing(agName), cells.build());
+        }
+    }
+
+    /** The action to perform on Mars and how long it takes (ms), empty if it is not a timed action. */
+    private Optional<Tuple<Action, Integer>> timedActionOf(Rover rover, Structure action) {
+        if (action.equals(Lit.exploreAction)) {
+            return Optional.of(Tuple.of(new Action.Explore(rover), settings.movementDurationMs()));
         } else if (action.getFunctor().equals(Lit.moveAction.getFunctor())) {
             final var direction = Lit.toDirection(action.getTerm(0));
-            actionToPerform = Optional.of(new Action.Move(rover, direction));
-            timeToSleepMs = Config.MOVEMENT_DURATION_MS;
+            return Optional.of(Tuple.of(new Action.Move(rover, direction), settings.movementDurationMs()));
         } else if (action.getFunctor().equals(Lit.rechargeAction.getFunctor())) {
-            actionToPerform = Optional.of(new Action.Recharge(rover));
-            timeToSleepMs = Config.RECHARGE_DURATION_MS;
+            return Optional.of(Tuple.of(new Action.Recharge(rover), settings.rechargeDurationMs()));
         } else if (action.getFunctor().equals(Lit.mineSampleAction.getFunctor())) {
             final var coord = Lit.toCoordinates(action.getTerm(0));
-            actionToPerform = Optional.of(new Action.MineSample((ScientistRover) rover, coord));
-            timeToSleepMs = Config.MINE_SAMPLE_DURATION_MS;
+            return Optional.of(Tuple.of(new Action.MineSample((ScientistRover) rover, coord),
+                    settings.mineSampleDurationMs()));
         } else if (action.getFunctor().equals(Lit.collectSampleAction.getFunctor())) {
             final var coord = Lit.toCoordinates(action.getTerm(0));
-            actionToPerform = Optional.of(new Action.CollectSample((ScientistRover) rover, coord));
-            timeToSleepMs = Config.COLLECT_SAMPLE_DURATION_MS;
+            return Optional.of(Tuple.of(new Action.CollectSample((ScientistRover) rover, coord),
+                    settings.collectSampleDurationMs()));
         } else if (action.getFunctor().equals(Lit.depositSamplesAction.getFunctor())) {
-            actionToPerform = Optional.of(new Action.DepositSamples((ScientistRover) rover));
-            timeToSleepMs = Config.DEPOSIT_SAMPLES_DURATION_MS;
-        } else {
-            logger.info("executing: " + action + ", but not implemented!");
+            return Optional.of(Tuple.of(new Action.DepositSamples((ScientistRover) rover),
+                    settings.depositSamplesDurationMs()));
         }
-        final int timeToSleepMsFinal = timeToSleepMs;
-
-        return actionToPerform.stream()
-                .map(a -> {
-                    try {
-                        Thread.sleep(timeToSleepMsFinal);
-                    } catch (InterruptedException e) {
-                        e.printStackTrace();
-                    }
-                    return mars.performAction(a);
-                })
-                .peek(result -> informAgsEnvironmentChanged())
-                .findFirst()
-                .orElse(true);
+        return Optional.empty();
     }
 
     @Override
     public Collection<Literal> getPercepts(String agName) {
+        final var start = System.nanoTime();
+        try {
+            return perceptsOf(agName);
+        } finally {
+            Metrics.recordSince(start, "Env.getPercepts", agName);
+        }
+    }
+
+    private Collection<Literal> perceptsOf(String agName) {
         final var percepts = new ArrayList<Literal>();
         if (agName.equals("base")) {
             percepts.addAll(mars.reachableRovers(mars.base()).stream().map(Rover::name).map(Lit::toInRange).toList());
         } else {
+            flushSavedCells(agName);
             final var rover = spawnIfMissing(agName);
-            final var roverCoord = mars.roverCoordinates().get(rover);
-
-            final var cameraPercepts = mars.cameraRangeOf(rover).stream()
-                    .map(coord -> {
-                        final Literal terrainLiteral = switch (mars.terrainAt(coord)) {
-                            case Terrain.Empty() -> ASSyntax.createAtom("empty");
-                            case Terrain.Obstacle() -> ASSyntax.createAtom("obstacle");
-                            case Terrain.Sample() -> ASSyntax.createAtom("sample");
-                            case Terrain.MiningSpot() -> ASSyntax.createAtom("miningSpot");
-                            case Terrain.Base() -> ASSyntax.createAtom("base");
-                        };
-                        return ASSyntax.createLiteral(
-                                "see",
-                                Lit.fromCoordinates(coord),
-                                terrainLiteral);
-                    })
-                    .toList();
+            final var roverCoord = mars.coordinatesOf(rover);
+
+            // With delta percepts a cell is seen only if the rover does not already know its current terrain
+            // (its view of Mars is where its knowledge is stored).
+            final var cameraPercepts = new ArrayList<Literal>();
+            final var roversPercepts = new ArrayList<Literal>();
+            mars.forEachInCameraRangeOf(rover, coord -> {
+                final var terrain = mars.terrainAt(coord);
+                if (!settings.deltaPercepts()
+                        || !rover.marsView().terrainAt(coord).equals(new TerrainView.Known(terrain))) {
+                    cameraPercepts.add(ASSyntax.createLiteral(
+                            "see",
+                            Lit.fromCoordinates(coord),
+                            Lit.fromTerrain(terrain)));
+                }
+                if (mars.roverAtCoordinates(coord).isPresent()) {
+                    roversPercepts.add(ASSyntax.createLiteral("rover", Lit.fromCoordinates(coord)));
+                }
+            });
             percepts.addAll(cameraPercepts);
-
-            final var roversPercepts = mars.cameraRangeOf(rover).stream()
-                    .filter(coord -> mars.roverAtCoordinates(coord).isPresent())
-                    .map(coord -> ASSyntax.createLiteral("rover", Lit.fromCoordinates(coord)))
-                    .toList();
             percepts.addAll(roversPercepts);
 
             percepts.add(ASSyntax.createLiteral("battery", ASSyntax.createNumber(rover.battery())));
@@ -167,7 +305,7 @@ public class Env extends Environment {
             }
 
             percepts.add(ASSyntax.createLiteral("randomMovementProbability",
-                    ASSyntax.createNumber(Config.RANDOM_MOVEMENT_PROBABILITY)));
+                    ASSyntax.createNumber(settings.randomMovementProbability())));
 
             if (rover instanceof ScientistRover scientist) {
                 percepts.add(ASSyntax.createLiteral("iAmAScientist"));
@@ -180,13 +318,28 @@ public class Env extends Environment {
                                 ASSyntax.createNumber(scientist.miningSampleEnergyCost())));
             }
         }
+        if (settings.deltaPercepts()) {
+            final var last = lastPercepts.put(agName, percepts);
+            if (percepts.equals(last)) {
+                // Nothing changed, null tells Jason to skip belief update
+                return null;
+            }
+        }
+        batchRun.ifPresent(b -> b.perceptsSent(percepts.size()));
         return percepts;
     }
 
     private Rover spawnIfMissing(String agName) {
+        return mars.rover(agName).orElseGet(() -> spawn(agName));
+    }
+
+    // Percepts and actions of the same agent may race to spawn it
+    synchronized private Rover spawn(String agName) {
         return mars.rover(agName).orElseGet(() -> {
             final var rover = agName.endsWith("S") ? scientistRoverNamed(agName) : simpleRoverNamed(agName);
             mars.spawn(rover);
+            // Rovers perceive before acting, the scheduler then waits for their first action
+            scheduler.register(agName);
             return rover;
         });
     }
@@ -194,6 +347,13 @@ public class Env extends Environment {
     /** Called before the end of MAS execution */
     @Override
     public void stop() {
+        scheduler.stop();
+        checkpoints.ifPresent(executor -> {
+            executor.shutdownNow();
+            checkpoint();
+        });
+        closeJournal();
+        Metrics.stopLogging();
         super.stop();
     }
 
@@ -210,6 +370,11 @@ public class Env extends Environment {
         public static final Literal down = ASSyntax.createAtom("down");
         public static final Literal left = ASSyntax.createAtom("left");
         public static final Literal right = ASSyntax.createAtom("right");
+        public static final Literal empty = ASSyntax.createAtom("empty");
+        public static final Literal obstacle = ASSyntax.createAtom("obstacle");
+        public static final Literal sample = ASSyntax.createAtom("sample");
+        public static final Literal miningSpot = ASSyntax.createAtom("miningSpot");
+        public static final Literal base = ASSyntax.createAtom("base");
 
         public static Terrain toTerrain(Term t) {
             return switch (t.toString()) {
@@ -222,6 +387,16 @@ public class Env extends Environment {
             };
         }
 
+        public static Literal fromTerrain(Terrain t) {
+            return switch (t) {
+                case Terrain.Empty() -> empty;
+                case Terrain.Obstacle() -> obstacle;
+                case Terrain.Sample() -> sample;
+                case Terrain.MiningSpot() -> miningSpot;
+                case Terrain.Base() -> base;
+            };
+        }
+
         public static Literal toInRange(String name) {
             return ASSyntax.createLiteral("inRange", ASSyntax.createLiteral(name));
         }
@@ -230,6 +405,15 @@ public class Env extends Environment {
             return ASSyntax.createLiteral("coord", ASSyntax.createNumber(coord.x()), ASSyntax.createNumber(coord.y()));
         }
 
+        public static Literal fromDirection(Direction d) {
+            return switch (d) {
+                case Direction.Up() -> up;
+                case Direction.Down() -> down;
+                case Direction.Left() -> left;
+                case Direction.Right() -> right;
+            };
+        }
+
         public static Direction toDirection(Term t) {
             return switch (t.toString()) {
                 case "up" -> new Direction.Up();
@@ -273,4 +457,20 @@ public class Env extends Environment {
     public Mars mars() {
         return mars;
     }
+
+    public Settings settings() {
+        return settings;
+    }
+
+    /**
+     * The view of Mars of the given agent, the base or a rover (which is spawned if needed).
+     * It includes all the cells saved by the agent so far.
+     */
+    public HasViewOfMars viewOf(String agName) {
+        if (agName.equals("base")) {
+            return mars.base();
+        }
+        flushSavedCells(agName);
+        return spawnIfMissing(agName);
+    }
 }
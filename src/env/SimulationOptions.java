@@ -0,0 +1,95 @@
+package src.env;
+
+import java.util.*;
+
+import src.model.Settings;
+
+/**
+ * Options of a run, given as key=value environment arguments in the .mas2j file
+ * (e.g. environment: src.env.Env("headless", "seed=42", "MARS_SIZE=100"))
+ * or as robotsOnMars.key=value system properties. Arguments win over properties.
+ *
+ * Accepted keys:
+ * - headless: runs without GUI until a stop condition is met, then prints a summary
+ * - seed: seed of the generated map
+ * - stopWhenExplored: stops once the rovers know the whole map (default when no other stop condition is given)
+ * - stopAtSamples: stops once this many samples have been deposited
+ * - timeBudgetMs: stops after this much simulated time
+ * - wallTimeBudgetMs: stops after this much wall time
+ * - sampleEveryMs: simulated time between two samples of the explored fraction
+ * - summary: file to write the summary to, standard output otherwise
+ * - checkpoint: file the simulation is resumed from if it exists, and periodically checkpointed to
+ * - checkpointEverySeconds: wall time between two checkpoints (default 60)
+ * - journal: file every change of Mars is journaled to, to be replayed by src.model.JournalReplay
+ * - any Config parameter name (e.g. MARS_SIZE, TIME_SCALE), overriding it in the settings of the run
+ *
+ * A headless run also stops if no action is performed nor pending for a while (e.g. every rover is stuck).
+ */
+public record SimulationOptions(
+        boolean headless,
+        long seed,
+        boolean stopWhenExplored,
+        OptionalInt stopAtSamples,
+        OptionalLong timeBudgetMs,
+        OptionalLong wallTimeBudgetMs,
+        long sampleEveryMs,
+        Optional<String> summaryPath,
+        Optional<String> checkpointPath,
+        long checkpointEverySeconds,
+        Optional<String> journalPath,
+        Settings settings) {
+
+    private static final String PROPERTY_PREFIX = "robotsOnMars.";
+
+    /** Parses the options, the Config overrides among them make up the settings of the run. */
+    public static SimulationOptions parse(String[] args) {
+        final var values = new LinkedHashMap<String, String>();
+        System.getProperties().stringPropertyNames().stream()
+                .filter(k -> k.startsWith(PROPERTY_PREFIX))
+                .forEach(k -> values.put(k.substring(PROPERTY_PREFIX.length()), System.getProperty(k)));
+        for (final var arg : args) {
+            final var option = arg.replace("\"", "").trim();
+            final var separator = option.indexOf('=');
+            if (separator < 0) {
+                values.put(option, "true");
+            } else {
+                values.put(option.substring(0, separator).trim(), option.substring(separator + 1).trim());
+            }
+        }
+
+        var settings = Settings.DEFAULTS;
+        final var parameters = settings.byName().keySet();
+        for (final var e : values.entrySet()) {
+            if (parameters.contains(e.getKey())) {
+                settings = settings.with(e.getKey(), e.getValue());
+            }
+        }
+
+        final var stopAtSamples = Optional.ofNullable(values.get("stopAtSamples"))
+                .map(v -> OptionalInt.of(Integer.parseInt(v)))
+                .orElse(OptionalInt.empty());
+        final var timeBudgetMs = Optional.ofNullable(values.get("timeBudgetMs"))
+                .map(v -> OptionalLong.of(Long.parseLong(v)))
+                .orElse(OptionalLong.empty());
+        final var wallTimeBudgetMs = Optional.ofNullable(values.get("wallTimeBudgetMs"))
+                .map(v -> OptionalLong.of(Long.parseLong(v)))
+                .orElse(OptionalLong.empty());
+        final var stopWhenExplored = Optional.ofNullable(values.get("stopWhenExplored"))
+                .map(Boolean::parseBoolean)
+                .orElse(stopAtSamples.isEmpty() && timeBudgetMs.isEmpty() && wallTimeBudgetMs.isEmpty());
+
+        return new SimulationOptions(
+                Boolean.parseBoolean(values.getOrDefault("headless", "false")),
+                Long.parseLong(values.getOrDefault("seed", String.valueOf(System.currentTimeMillis()))),
+                stopWhenExplored,
+                stopAtSamples,
+                timeBudgetMs,
+                wallTimeBudgetMs,
+                Long.parseLong(values.getOrDefault("sampleEveryMs", "10000")),
+                Optional.ofNullable(values.get("summary")),
+                Optional.ofNullable(values.get("checkpoint")),
+                Long.parseLong(values.getOrDefault("checkpointEverySeconds", "60")),
+                Optional.ofNullable(values.get("journal")),
+                settings);
+    }
+}
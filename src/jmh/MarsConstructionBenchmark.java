@@ -0,0 +1,28 @@
+package src.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import src.model.*;
+
+/**
+ * Cost of generating a whole map (regions are generated in parallel on the common fork-join pool).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MarsConstructionBenchmark {
+
+    @Param({ "50", "200", "1000" })
+    public int size;
+
+    @Benchmark
+    public Mars construct() {
+        return new Mars(size, Config.MARS_OBSTACLES_DENSITY, Config.MARS_SAMPLES_DENSITY,
+                Config.MARS_MINING_SPOTS_DENSITY, Config.MARS_BASE_SIZE, Config.MARS_BASE_ANTENNA_RANGE, 42L);
+    }
+}
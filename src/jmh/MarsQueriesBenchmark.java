@@ -0,0 +1,114 @@
+package src.jmh;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import src.model.*;
+
+/**
+ * Per-call cost of the Mars queries and actions the environment runs on every agent cycle.
+ * Rovers are spread out from the base by a few explore steps before measuring.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MarsQueriesBenchmark {
+
+    private static final int EXPLORE_STEPS = 50;
+    private static final int PROBES = 1024;
+
+    @Param({ "50", "200", "1000" })
+    public int size;
+
+    @Param({ "3", "50", "200" })
+    public int rovers;
+
+    private Mars mars;
+    private Rover[] fleet;
+    private Coordinates[] probes;
+    private int next = 0;
+    private long moves = 0;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // The base must have room for every rover to spawn
+        final var baseSide = Math.max(Config.MARS_BASE_SIZE, (int) Math.ceil(Math.sqrt(rovers)) + 2);
+        mars = new Mars(size, Config.MARS_OBSTACLES_DENSITY, Config.MARS_SAMPLES_DENSITY,
+                Config.MARS_MINING_SPOTS_DENSITY, baseSide, Config.MARS_BASE_ANTENNA_RANGE, 42L);
+
+        final var spawned = new ArrayList<Rover>();
+        for (var i = 0; i < rovers; i++) {
+            // Batteries never run out so that moves are always attempted
+            final var rover = new SimpleRover("rover" + i, Integer.MAX_VALUE, Integer.MAX_VALUE,
+                    Config.ROVER_CAMERA_RANGE, Config.ROVER_ANTENNA_RANGE, 0, 0);
+            mars.spawn(rover);
+            spawned.add(rover);
+        }
+        fleet = spawned.toArray(Rover[]::new);
+        for (var step = 0; step < EXPLORE_STEPS; step++) {
+            for (var rover : fleet) {
+                mars.forEachInCameraRangeOf(rover,
+                        c -> mars.updateMarsViewOf(rover, c, mars.terrainAt(c)));
+                mars.performAction(new Action.Explore(rover));
+            }
+        }
+
+        final var random = new Random(42L);
+        probes = new Coordinates[PROBES];
+        for (var i = 0; i < PROBES; i++) {
+            probes[i] = new Coordinates(
+                    random.nextInt(mars.negativeBound(), mars.positiveBound() + 1),
+                    random.nextInt(mars.negativeBound(), mars.positiveBound() + 1));
+        }
+    }
+
+    private Coordinates nextProbe() {
+        next = (next + 1) % PROBES;
+        return probes[next];
+    }
+
+    private Rover nextRover() {
+        next = (next + 1) % fleet.length;
+        return fleet[next];
+    }
+
+    @Benchmark
+    public Terrain terrainAt() {
+        return mars.terrainAt(nextProbe());
+    }
+
+    @Benchmark
+    public Object roverAtCoordinates() {
+        return mars.roverAtCoordinates(nextProbe());
+    }
+
+    @Benchmark
+    public Object bestExploreDirection() {
+        return mars.bestExploreDirection(nextRover());
+    }
+
+    @Benchmark
+    public Object cameraRangeOf() {
+        return mars.cameraRangeOf(nextRover());
+    }
+
+    @Benchmark
+    public Object reachableRovers() {
+        return mars.reachableRovers(nextRover());
+    }
+
+    @Benchmark
+    public boolean performMove() {
+        // Every rover goes back and forth so the fleet stays where setUp left it
+        final var rover = fleet[(int) (moves % fleet.length)];
+        final Direction direction = (moves / fleet.length) % 2 == 0 ? new Direction.Right() : new Direction.Left();
+        moves++;
+        return mars.performAction(new Action.Move(rover, direction));
+    }
+}
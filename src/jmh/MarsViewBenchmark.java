@@ -0,0 +1,60 @@
+package src.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import src.model.*;
+
+/**
+ * Cost of walking what a rover knows, depending on how much of Mars it has seen.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MarsViewBenchmark {
+
+    @Param({ "50", "200" })
+    public int size;
+
+    @Param({ "0.1", "0.5", "1.0" })
+    public double knownFraction;
+
+    private MarsView view;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        final var mars = new Mars(size, Config.MARS_OBSTACLES_DENSITY, Config.MARS_SAMPLES_DENSITY,
+                Config.MARS_MINING_SPOTS_DENSITY, Config.MARS_BASE_SIZE, Config.MARS_BASE_ANTENNA_RANGE, 42L);
+        view = new MarsView();
+        // Known cells are a block of columns starting from the left, as a sweeping rover would leave them
+        final var toKnow = (int) (mars.area() * knownFraction);
+        mars.allCoordinates().stream()
+                .limit(toKnow)
+                .forEach(c -> view.updateView(c, new TerrainView.Known(mars.terrainAt(c))));
+    }
+
+    @Benchmark
+    public void iterateKnownTerrain(Blackhole bh) {
+        for (var entry : view.knownTerrain().entrySet()) {
+            bh.consume(entry);
+        }
+    }
+
+    @Benchmark
+    public void lookupKnownTerrain(Blackhole bh) {
+        final var known = view.knownTerrain();
+        for (var c : known.keySet()) {
+            bh.consume(known.get(c));
+        }
+    }
+
+    @Benchmark
+    public int knownTerrainSize() {
+        return view.knownTerrain().size();
+    }
+}
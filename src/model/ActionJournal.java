@@ -0,0 +1,248 @@
+package src.model;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Append-only binary log of everything changing Mars: rovers spawning, actions (with their outcome) and
+ * updates of views of Mars. It can be replayed on a freshly generated Mars by {@link JournalReplay}.
+ *
+ * Records are appended by many threads at once. Each of them gets a sequence number taken where its change
+ * becomes visible to other rovers (see {@link #stamp()}), e.g. before a rover leaves its cell, so that
+ * applying records by sequence never finds a cell still taken or a sample not yet mined.
+ * Records are buffered and written when the buffer fills up and when the journal is closed, a crash loses
+ * the last ones. A failing write stops the journal rather than the simulation.
+ *
+ * Layout (see {@link ChannelEncoder}): magic, format version, bound of Mars, side and antenna range of the
+ * base and seed, then records starting with their kind:
+ * - ROVER: id and name, the first time a rover (or the base, id 0) appears in the journal
+ * - SPAWN: var sequence, var id, the rover as in a checkpoint, x, y
+ * - ACTION: var sequence, var id, action kind, outcome, then the direction or the coordinates if any
+ *   (the direction actually taken for explore)
+ * - VIEW_UPDATE: var sequence, var id, the cells as in a checkpoint
+ */
+public final class ActionJournal implements Closeable {
+
+    static final int MAGIC = 0x524f4d4a; // "ROMJ"
+    static final int VERSION = 1;
+    static final int BUFFER_SIZE = 1 << 16;
+
+    static final byte ROVER = 0;
+    static final byte SPAWN = 1;
+    static final byte ACTION = 2;
+    static final byte VIEW_UPDATE = 3;
+
+    static final byte EXPLORE = 0;
+    static final byte MOVE = 1;
+    static final byte RECHARGE = 2;
+    static final byte MINE_SAMPLE = 3;
+    static final byte COLLECT_SAMPLE = 4;
+    static final byte DEPOSIT_SAMPLES = 5;
+
+    static final byte NO_DIRECTION = -1;
+    static final int BASE_ID = 0;
+
+    private static final Logger logger = Logger.getLogger("robotsOnMars." + ActionJournal.class.getName());
+
+    private final Mars mars;
+    private final FileChannel channel;
+    private final ChannelEncoder out;
+    private final AtomicLong sequence = new AtomicLong();
+    // Sequence taken by the current thread where its change became visible, used by its next record
+    private final ThreadLocal<Long> stamped = new ThreadLocal<>();
+    private final Map<String, Integer> ids = new HashMap<>();
+    private boolean closed = false;
+
+    private ActionJournal(Mars mars, FileChannel channel) {
+        this.mars = mars;
+        this.channel = channel;
+        this.out = new ChannelEncoder(channel, BUFFER_SIZE);
+    }
+
+    /**
+     * Starts journaling the changes of Mars to a new file (replacing an existing one), before anything
+     * happens on Mars so that the journal can be replayed on a freshly generated Mars.
+     */
+    public static ActionJournal start(Mars mars, Path path) throws IOException {
+        final var channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        final var journal = new ActionJournal(mars, channel);
+        journal.out.putInt(MAGIC);
+        journal.out.putInt(VERSION);
+        journal.out.putInt(mars.positiveBound());
+        journal.out.putInt(mars.base().side());
+        journal.out.putInt(mars.base().antennaRange());
+        journal.out.putLong(mars.seed());
+        journal.ids.put("base", BASE_ID);
+        mars.journalTo(journal);
+        return journal;
+    }
+
+    /** Takes the sequence number of the change the current thread is making visible, see the class doc. */
+    void stamp() {
+        stamped.set(sequence.getAndIncrement());
+    }
+
+    synchronized void spawned(Rover rover, Coordinates coordinates) {
+        append(() -> {
+            final var id = idOf(rover.name());
+            out.putByte(SPAWN);
+            out.putVar(nextSequence());
+            out.putVar(id);
+            Checkpoint.writeRover(out, rover, rover.battery(),
+                    rover instanceof ScientistRover s ? s.carriedSamples() : 0);
+            out.putInt(coordinates.x());
+            out.putInt(coordinates.y());
+        });
+    }
+
+    synchronized void performed(Action action, boolean result, Coordinates from, Coordinates to) {
+        append(() -> {
+            final var id = idOf(action.rover().name());
+            out.putByte(ACTION);
+            out.putVar(nextSequence());
+            out.putVar(id);
+            switch (action) {
+                case Action.Explore e -> {
+                    out.putByte(EXPLORE);
+                    out.putByte(result ? (byte) 1 : 0);
+                    out.putByte(result ? codeOf(to.minus(from)) : NO_DIRECTION);
+                }
+                case Action.Move m -> {
+                    out.putByte(MOVE);
+                    out.putByte(result ? (byte) 1 : 0);
+                    out.putByte(codeOf(m.direction()));
+                }
+                case Action.Recharge r -> {
+                    out.putByte(RECHARGE);
+                    out.putByte(result ? (byte) 1 : 0);
+                }
+                case Action.MineSample m -> {
+                    out.putByte(MINE_SAMPLE);
+                    out.putByte(result ? (byte) 1 : 0);
+                    out.putInt(m.coordinates().x());
+                    out.putInt(m.coordinates().y());
+                }
+                case Action.CollectSample c -> {
+                    out.putByte(COLLECT_SAMPLE);
+                    out.putByte(result ? (byte) 1 : 0);
+                    out.putInt(c.coordinates().x());
+                    out.putInt(c.coordinates().y());
+                }
+                case Action.DepositSamples d -> {
+                    out.putByte(DEPOSIT_SAMPLES);
+                    out.putByte(result ? (byte) 1 : 0);
+                }
+            }
+        });
+    }
+
+    synchronized void viewUpdated(HasViewOfMars h, CellBatch cells) {
+        append(() -> {
+            final var id = idOf(h instanceof Rover r ? r.name() : "base");
+            out.putByte(VIEW_UPDATE);
+            out.putVar(nextSequence());
+            out.putVar(id);
+            out.putCells(cells);
+        });
+    }
+
+    /** Stops journaling and writes the records still buffered. */
+    @Override
+    synchronized public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        mars.journalTo(null);
+        try {
+            out.flush();
+            channel.force(false);
+        } finally {
+            channel.close();
+        }
+    }
+
+    private interface Writer {
+        void write() throws IOException;
+    }
+
+    private void append(Writer record) {
+        if (closed) {
+            stamped.remove();
+            return;
+        }
+        try {
+            record.write();
+        } catch (IOException | RuntimeException e) {
+            logger.log(Level.SEVERE, "Journal stopped, could not append to it", e);
+            try {
+                close();
+            } catch (IOException ignored) {
+                // Already failing
+            }
+        }
+    }
+
+    private long nextSequence() {
+        final var s = stamped.get();
+        if (s == null) {
+            return sequence.getAndIncrement();
+        }
+        stamped.remove();
+        return s;
+    }
+
+    private int idOf(String name) throws IOException {
+        final var id = ids.get(name);
+        if (id != null) {
+            return id;
+        }
+        final var created = ids.size();
+        ids.put(name, created);
+        out.putByte(ROVER);
+        out.putVar(created);
+        out.putString(name);
+        return created;
+    }
+
+    static byte codeOf(Coordinates step) {
+        if (step.x() == 0 && step.y() == 1) {
+            return 0;
+        } else if (step.x() == 0 && step.y() == -1) {
+            return 1;
+        } else if (step.x() == -1 && step.y() == 0) {
+            return 2;
+        } else if (step.x() == 1 && step.y() == 0) {
+            return 3;
+        }
+        throw new IllegalArgumentException("Not a step: " + step);
+    }
+
+    static byte codeOf(Direction direction) {
+        return switch (direction) {
+            case Direction.Up u -> 0;
+            case Direction.Down d -> 1;
+            case Direction.Left l -> 2;
+            case Direction.Right r -> 3;
+        };
+    }
+
+    static Direction directionOf(byte code) {
+        return switch (code) {
+            case 0 -> new Direction.Up();
+            case 1 -> new Direction.Down();
+            case 2 -> new Direction.Left();
+            case 3 -> new Direction.Right();
+            default -> throw new IllegalArgumentException("Unknown direction " + code);
+        };
+    }
+}
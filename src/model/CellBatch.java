@@ -0,0 +1,101 @@
+package src.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Immutable batch of known cells with the time they were observed, stored in primitive arrays
+ * so that it can be exchanged and merged without allocating anything per cell.
+ */
+public final class CellBatch {
+
+    public static final CellBatch EMPTY = new Builder().build();
+
+    // x and y of cell i are at 2i and 2i + 1
+    private final int[] xy;
+    private final byte[] terrains;
+    private final long[] timestamps;
+
+    private CellBatch(int[] xy, byte[] terrains, long[] timestamps) {
+        this.xy = xy;
+        this.terrains = terrains;
+        this.timestamps = timestamps;
+    }
+
+    public int size() {
+        return terrains.length;
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public int x(int i) {
+        return xy[i * 2];
+    }
+
+    public int y(int i) {
+        return xy[i * 2 + 1];
+    }
+
+    public Coordinates coordinates(int i) {
+        return new Coordinates(x(i), y(i));
+    }
+
+    public List<Coordinates> coordinates() {
+        final var coordinates = new ArrayList<Coordinates>(size());
+        for (int i = 0; i < size(); i++) {
+            coordinates.add(coordinates(i));
+        }
+        return coordinates;
+    }
+
+    /** The terrain code of cell i, see {@link Terrain#codeOf(Terrain)}. */
+    public byte terrainCode(int i) {
+        return terrains[i];
+    }
+
+    public Terrain terrain(int i) {
+        return Terrain.ofCode(terrains[i]);
+    }
+
+    public long timestamp(int i) {
+        return timestamps[i];
+    }
+
+    @Override
+    public String toString() {
+        return "cellBatch(" + size() + ")";
+    }
+
+    public static class Builder {
+        private int[] xy = new int[16];
+        private byte[] terrains = new byte[8];
+        private long[] timestamps = new long[8];
+        private int size = 0;
+
+        public Builder add(int x, int y, byte terrainCode, long timestamp) {
+            if (size == terrains.length) {
+                xy = Arrays.copyOf(xy, xy.length * 2);
+                terrains = Arrays.copyOf(terrains, terrains.length * 2);
+                timestamps = Arrays.copyOf(timestamps, timestamps.length * 2);
+            }
+            xy[size * 2] = x;
+            xy[size * 2 + 1] = y;
+            terrains[size] = terrainCode;
+            timestamps[size] = timestamp;
+            size++;
+            return this;
+        }
+
+        public Builder add(Coordinates c, Terrain t, long timestamp) {
+            return add(c.x(), c.y(), Terrain.codeOf(t), timestamp);
+        }
+
+        public CellBatch build() {
+            return new CellBatch(Arrays.copyOf(xy, size * 2), Arrays.copyOf(terrains, size),
+                    Arrays.copyOf(timestamps, size));
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package src.model;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Collects what changes on Mars and tells listeners about it from a background thread, so that
+ * whoever changed Mars does not wait for them. Changes happening close together are coalesced
+ * into a single {@link Mars.Change}, listeners are told at most once per period.
+ * Changes are recorded without locking, as they happen on every action, and not at all while nobody listens.
+ */
+final class ChangeNotifier {
+
+    // Shared by every notifier, listeners of different Mars are not expected to be slow
+    private static final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        final var thread = new Thread(r, "mars-notifier");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final List<Mars.Listener> listeners = new CopyOnWriteArrayList<>();
+    private final long periodNanos;
+    // Listeners are told one change at a time, even when flushing from another thread
+    private final Object deliveryLock = new Object();
+    private final Set<Coordinates> dirtyCells = ConcurrentHashMap.newKeySet();
+    private final Set<Rover> dirtyRovers = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private volatile long lastDelivery = System.nanoTime();
+
+    /**
+     * @param perSecond maximum number of notifications per second, POSITIVE_INFINITY does not wait
+     */
+    ChangeNotifier(double perSecond) {
+        if (!(perSecond > 0)) {
+            throw new IllegalArgumentException("Notifications per second must be positive");
+        }
+        this.periodNanos = (long) (TimeUnit.SECONDS.toNanos(1) / perSecond);
+    }
+
+    void addListener(Mars.Listener l) {
+        listeners.add(l);
+    }
+
+    void removeListener(Mars.Listener l) {
+        listeners.remove(l);
+    }
+
+    /** Records that a cell changed, with the rover in it (null if none). */
+    void changed(Coordinates cell, Rover rover) {
+        if (listeners.isEmpty()) {
+            return;
+        }
+        dirtyCells.add(cell);
+        if (rover != null) {
+            dirtyRovers.add(rover);
+        }
+        schedule();
+    }
+
+    /** Records that a rover moved. */
+    void moved(Rover rover, Coordinates from, Coordinates to) {
+        if (listeners.isEmpty()) {
+            return;
+        }
+        dirtyCells.add(from);
+        dirtyCells.add(to);
+        dirtyRovers.add(rover);
+        schedule();
+    }
+
+    /** Records that the cells of the batch changed for a rover (null if none, e.g. in the view of the base). */
+    void changed(CellBatch cells, Rover rover) {
+        if (listeners.isEmpty()) {
+            return;
+        }
+        for (int i = 0; i < cells.size(); i++) {
+            dirtyCells.add(cells.coordinates(i));
+        }
+        if (rover != null) {
+            dirtyRovers.add(rover);
+        }
+        schedule();
+    }
+
+    private void schedule() {
+        if (scheduled.compareAndSet(false, true)) {
+            final var delay = Math.max(0, lastDelivery + periodNanos - System.nanoTime());
+            executor.schedule(this::flush, delay, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /** Tells listeners about pending changes right away, on the calling thread. */
+    void flush() {
+        synchronized (deliveryLock) {
+            // Before draining, so that what is recorded from now on gets its own delivery if it is missed
+            scheduled.set(false);
+            final var cells = drain(dirtyCells);
+            final var rovers = drain(dirtyRovers);
+            if (cells.isEmpty() && rovers.isEmpty()) {
+                return;
+            }
+            final var change = new Mars.Change(Collections.unmodifiableSet(cells), Collections.unmodifiableSet(rovers));
+            lastDelivery = System.nanoTime();
+            for (final var l : listeners) {
+                try {
+                    l.marsUpdated(change);
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    // Elements recorded meanwhile are either taken now or left for the next delivery
+    private static <T> Set<T> drain(Set<T> dirty) {
+        final var drained = new HashSet<T>();
+        for (final var it = dirty.iterator(); it.hasNext();) {
+            drained.add(it.next());
+            it.remove();
+        }
+        return drained;
+    }
+}
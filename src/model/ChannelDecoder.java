@@ -0,0 +1,121 @@
+package src.model;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Decodes what {@link ChannelEncoder} wrote, from a buffer which is refilled from the channel every time
+ * it runs out.
+ */
+final class ChannelDecoder {
+    private final ReadableByteChannel channel;
+    private final ByteBuffer buffer;
+
+    ChannelDecoder(ReadableByteChannel channel, int bufferSize) {
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocateDirect(bufferSize).flip();
+    }
+
+    byte getByte() throws IOException {
+        ensureAvailable(Byte.BYTES);
+        return buffer.get();
+    }
+
+    int getInt() throws IOException {
+        ensureAvailable(Integer.BYTES);
+        return buffer.getInt();
+    }
+
+    long getLong() throws IOException {
+        ensureAvailable(Long.BYTES);
+        return buffer.getLong();
+    }
+
+    double getDouble() throws IOException {
+        ensureAvailable(Double.BYTES);
+        return buffer.getDouble();
+    }
+
+    long getVar() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < Long.SIZE; shift += 7) {
+            final var b = getByte();
+            value |= (long) (b & 0x7f) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed variable length number");
+    }
+
+    long getSignedVar() throws IOException {
+        final var value = getVar();
+        return value >>> 1 ^ -(value & 1);
+    }
+
+    String getString() throws IOException {
+        final var bytes = new byte[getInt()];
+        for (int offset = 0; offset < bytes.length;) {
+            ensureAvailable(1);
+            final var length = Math.min(buffer.remaining(), bytes.length - offset);
+            buffer.get(bytes, offset, length);
+            offset += length;
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    void getRuns(byte[] cells) throws IOException {
+        for (int i = 0; i < cells.length;) {
+            final var length = getVar();
+            final var code = getByte();
+            if (length <= 0 || length > cells.length - i) {
+                throw new IOException("Malformed run of " + length + " cells");
+            }
+            for (final var end = i + (int) length; i < end; i++) {
+                cells[i] = code;
+            }
+        }
+    }
+
+    CellBatch getCells() throws IOException {
+        final var size = getInt();
+        final var cells = new CellBatch.Builder();
+        int x = 0, y = 0;
+        long timestamp = 0;
+        for (int i = 0; i < size; i++) {
+            x += (int) getSignedVar();
+            y += (int) getSignedVar();
+            final var terrainCode = getByte();
+            timestamp += getSignedVar();
+            cells.add(x, y, terrainCode, timestamp);
+        }
+        return cells.build();
+    }
+
+    /** True if the channel has nothing left to read. */
+    boolean atEnd() throws IOException {
+        if (buffer.hasRemaining()) {
+            return false;
+        }
+        buffer.clear();
+        final var read = channel.read(buffer);
+        buffer.flip();
+        return read < 0;
+    }
+
+    private void ensureAvailable(int bytes) throws IOException {
+        if (buffer.remaining() >= bytes) {
+            return;
+        }
+        buffer.compact();
+        while (buffer.position() < bytes) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("Truncated checkpoint");
+            }
+        }
+        buffer.flip();
+    }
+}
@@ -0,0 +1,111 @@
+package src.model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Encodes values into a buffer which is written to the channel every time it fills up (big endian,
+ * var = LEB128, zigzag var for signed values). Read them back with {@link ChannelDecoder}.
+ */
+final class ChannelEncoder {
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer;
+
+    ChannelEncoder(WritableByteChannel channel, int bufferSize) {
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocateDirect(bufferSize);
+    }
+
+    void putByte(byte value) throws IOException {
+        ensureRoom(Byte.BYTES);
+        buffer.put(value);
+    }
+
+    void putInt(int value) throws IOException {
+        ensureRoom(Integer.BYTES);
+        buffer.putInt(value);
+    }
+
+    void putLong(long value) throws IOException {
+        ensureRoom(Long.BYTES);
+        buffer.putLong(value);
+    }
+
+    void putDouble(double value) throws IOException {
+        ensureRoom(Double.BYTES);
+        buffer.putDouble(value);
+    }
+
+    void putVar(long value) throws IOException {
+        ensureRoom(10);
+        while ((value & ~0x7fL) != 0) {
+            buffer.put((byte) (value & 0x7f | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    void putSignedVar(long value) throws IOException {
+        putVar(value << 1 ^ value >> 63);
+    }
+
+    void putString(String value) throws IOException {
+        final var bytes = value.getBytes(StandardCharsets.UTF_8);
+        putInt(bytes.length);
+        for (int offset = 0; offset < bytes.length;) {
+            ensureRoom(1);
+            final var length = Math.min(buffer.remaining(), bytes.length - offset);
+            buffer.put(bytes, offset, length);
+            offset += length;
+        }
+    }
+
+    /** Cells are mostly empty, so they are written as runs of the same terrain code. */
+    void putRuns(byte[] cells) throws IOException {
+        for (int i = 0; i < cells.length;) {
+            var end = i + 1;
+            while (end < cells.length && cells[end] == cells[i]) {
+                end++;
+            }
+            putVar(end - i);
+            putByte(cells[i]);
+            i = end;
+        }
+    }
+
+    /**
+     * Known cells as their count followed by (var dx, var dy, terrain code, var dt) from the previous cell,
+     * which takes a few bytes per cell when they come column by column.
+     */
+    void putCells(CellBatch cells) throws IOException {
+        putInt(cells.size());
+        int x = 0, y = 0;
+        long timestamp = 0;
+        for (int i = 0; i < cells.size(); i++) {
+            putSignedVar(cells.x(i) - x);
+            putSignedVar(cells.y(i) - y);
+            putByte(cells.terrainCode(i));
+            putSignedVar(cells.timestamp(i) - timestamp);
+            x = cells.x(i);
+            y = cells.y(i);
+            timestamp = cells.timestamp(i);
+        }
+    }
+
+    /** Writes what is in the buffer to the channel. */
+    void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private void ensureRoom(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flush();
+        }
+    }
+}
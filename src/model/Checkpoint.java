@@ -0,0 +1,309 @@
+package src.model;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.Map;
+
+import src.utils.Metrics;
+
+/**
+ * Binary checkpoint of a simulation, to resume it later: terrain of Mars, rovers (position, battery and
+ * carried samples) and every view of Mars, the base's included, with the time each known cell was observed.
+ *
+ * Taking a checkpoint does not stop the simulation: the terrain, each rover and each view are copied while
+ * holding only their own lock, one after the other, and encoded into the channel without holding any.
+ * Each part is consistent on its own but not with the others (e.g. a rover may move after its position
+ * was copied and before its view is). Views are copied one at a time, so the memory needed is about the
+ * largest of them.
+ *
+ * Layout (big endian, var = LEB128, zigzag var for signed values):
+ * - magic, format version, bound of Mars, side and antenna range of the base, seed, deposited samples
+ * - terrain: kind of store, then its cells as runs of (var length, terrain code); chunked stores only keep
+ *   the generator and the modified chunks since the others can be generated again
+ * - the base view, then for each rover its kind, name, parameters, state, position and view; a view is
+ *   its count of known cells followed by (var dx, var dy, terrain code, var dt) from the previous cell
+ * - the magic again, to tell a complete checkpoint from a truncated one
+ */
+public final class Checkpoint {
+
+    private static final int MAGIC = 0x524f4d43; // "ROMC"
+    private static final int VERSION = 1;
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private static final byte DENSE_TERRAIN = 0;
+    private static final byte CHUNKED_TERRAIN = 1;
+    private static final byte SPARSE_TERRAIN = 2;
+    private static final byte SIMPLE_ROVER = 0;
+    private static final byte SCIENTIST_ROVER = 1;
+
+    private sealed interface TerrainCopy {
+    }
+
+    private record DenseCopy(int bound, byte[] cells) implements TerrainCopy {
+    }
+
+    private record ChunkedCopy(int maxCachedChunks, TerrainGenerator generator, Map<Long, byte[]> chunks)
+            implements TerrainCopy {
+    }
+
+    private record SparseCopy(Map<Coordinates, Terrain> cells) implements TerrainCopy {
+    }
+
+    private record RoverCopy(Coordinates coordinates, int battery, int carriedSamples) {
+    }
+
+    private Checkpoint() {
+    }
+
+    /**
+     * Writes a checkpoint of Mars to the file, replacing it only once the checkpoint is complete
+     * so that a crash while writing leaves the previous one intact.
+     */
+    public static void write(Mars mars, Path path) throws IOException {
+        final var start = System.nanoTime();
+        final var partial = path.resolveSibling(path.getFileName() + ".partial");
+        try (final var channel = FileChannel.open(partial, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            write(mars, channel);
+            channel.force(false);
+        }
+        Files.move(partial, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        Metrics.recordSince(start, "Checkpoint.write");
+    }
+
+    public static void write(Mars mars, WritableByteChannel channel) throws IOException {
+        final var out = new ChannelEncoder(channel, BUFFER_SIZE);
+        out.putInt(MAGIC);
+        out.putInt(VERSION);
+        out.putInt(mars.positiveBound());
+        out.putInt(mars.base().side());
+        out.putInt(mars.base().antennaRange());
+        out.putLong(mars.seed());
+        out.putInt(mars.depositedSamples());
+
+        writeTerrain(out, mars.withTerrainReadLocked(Checkpoint::copyOf));
+        writeView(out, mars.base().marsView());
+
+        final var rovers = mars.rovers().stream().sorted(Comparator.comparing(Rover::name)).toList();
+        out.putInt(rovers.size());
+        for (final var rover : rovers) {
+            final var copy = copyOf(mars, rover);
+            writeRover(out, rover, copy.battery(), copy.carriedSamples());
+            out.putInt(copy.coordinates().x());
+            out.putInt(copy.coordinates().y());
+            writeView(out, rover.marsView());
+        }
+        out.putInt(MAGIC);
+        out.flush();
+    }
+
+    /** Rebuilds Mars and its rovers as they were in the checkpoint, the terrain is not generated again. */
+    public static Mars read(Path path) throws IOException {
+        return read(path, Settings.DEFAULTS);
+    }
+
+    /** As {@link #read(Path)}, Mars then behaves according to the given settings (the map is the checkpoint's). */
+    public static Mars read(Path path, Settings settings) throws IOException {
+        try (final var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return read(channel, settings);
+        }
+    }
+
+    public static Mars read(ReadableByteChannel channel) throws IOException {
+        return read(channel, Settings.DEFAULTS);
+    }
+
+    public static Mars read(ReadableByteChannel channel, Settings settings) throws IOException {
+        final var in = new ChannelDecoder(channel, BUFFER_SIZE);
+        if (in.getInt() != MAGIC) {
+            throw new IOException("Not a checkpoint");
+        }
+        final var version = in.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported checkpoint version " + version);
+        }
+        final var bound = in.getInt();
+        final var base = new Base(in.getInt(), in.getInt());
+        final var seed = in.getLong();
+        final var depositedSamples = in.getInt();
+
+        final var mars = new Mars(bound, base, seed, readTerrain(in), settings);
+        mars.restoreDepositedSamples(depositedSamples);
+        readView(in, mars, base);
+
+        final var rovers = in.getInt();
+        for (int i = 0; i < rovers; i++) {
+            final var rover = readRover(in);
+            final var coordinates = new Coordinates(in.getInt(), in.getInt());
+            readView(in, mars, rover);
+            if (!mars.restore(rover, coordinates)) {
+                throw new IOException("Cannot place " + rover.name() + " at " + coordinates);
+            }
+        }
+        if (in.getInt() != MAGIC) {
+            throw new IOException("Corrupted checkpoint");
+        }
+        return mars;
+    }
+
+    private static TerrainCopy copyOf(TerrainStore store) {
+        return switch (store) {
+            case DenseTerrainStore d -> new DenseCopy(d.bound(), d.copyOfCells());
+            case ChunkedTerrainStore c -> new ChunkedCopy(c.maxCachedChunks(), c.generator(),
+                    c.copyOfModifiedChunks());
+            case SparseTerrainStore s -> new SparseCopy(s.copyOfCells());
+            default -> throw new IllegalArgumentException("Cannot checkpoint " + store.getClass().getName());
+        };
+    }
+
+    // The same lock moves are done with, position and battery are consistent
+    private static RoverCopy copyOf(Mars mars, Rover rover) {
+        synchronized (rover) {
+            return new RoverCopy(mars.coordinatesOf(rover), rover.battery(),
+                    rover instanceof ScientistRover s ? s.carriedSamples() : 0);
+        }
+    }
+
+    private static void writeTerrain(ChannelEncoder out, TerrainCopy terrain) throws IOException {
+        switch (terrain) {
+            case DenseCopy(var bound, var cells) -> {
+                out.putByte(DENSE_TERRAIN);
+                out.putInt(bound);
+                out.putRuns(cells);
+            }
+            case ChunkedCopy(var maxCachedChunks, var generator, var chunks) -> {
+                out.putByte(CHUNKED_TERRAIN);
+                out.putInt(maxCachedChunks);
+                out.putLong(generator.seed());
+                for (final var threshold : generator.thresholds()) {
+                    out.putDouble(threshold);
+                }
+                out.putInt(generator.baseBound());
+                out.putInt(chunks.size());
+                for (final var chunk : chunks.entrySet()) {
+                    out.putLong(chunk.getKey());
+                    out.putRuns(chunk.getValue());
+                }
+            }
+            case SparseCopy(var cells) -> {
+                out.putByte(SPARSE_TERRAIN);
+                out.putInt(cells.size());
+                for (final var cell : cells.entrySet()) {
+                    out.putInt(cell.getKey().x());
+                    out.putInt(cell.getKey().y());
+                    out.putByte(Terrain.codeOf(cell.getValue()));
+                }
+            }
+        }
+    }
+
+    private static TerrainStore readTerrain(ChannelDecoder in) throws IOException {
+        final var kind = in.getByte();
+        switch (kind) {
+            case DENSE_TERRAIN -> {
+                final var bound = in.getInt();
+                final var side = bound * 2 + 1;
+                final var cells = new byte[DenseTerrainStore.cellsIn(side)];
+                in.getRuns(cells);
+                return new DenseTerrainStore(bound, cells);
+            }
+            case CHUNKED_TERRAIN -> {
+                final var store = new ChunkedTerrainStore(in.getInt());
+                store.generate(new TerrainGenerator(in.getLong(), in.getDouble(), in.getDouble(), in.getDouble(),
+                        in.getInt()), 0);
+                final var chunks = in.getInt();
+                for (int i = 0; i < chunks; i++) {
+                    final var key = in.getLong();
+                    final var cells = new byte[TerrainGenerator.CHUNK_SIDE * TerrainGenerator.CHUNK_SIDE];
+                    in.getRuns(cells);
+                    store.restoreChunk(key, cells);
+                }
+                return store;
+            }
+            case SPARSE_TERRAIN -> {
+                final var store = new SparseTerrainStore();
+                final var cells = in.getInt();
+                for (int i = 0; i < cells; i++) {
+                    store.put(new Coordinates(in.getInt(), in.getInt()), Terrain.ofCode(in.getByte()));
+                }
+                return store;
+            }
+            default -> throw new IOException("Unknown terrain store " + kind);
+        }
+    }
+
+    /** A rover with its parameters, battery and carried samples, see {@link #readRover}. */
+    static void writeRover(ChannelEncoder out, Rover rover, int battery, int carriedSamples) throws IOException {
+        switch (rover) {
+            case ScientistRover s -> {
+                out.putByte(SCIENTIST_ROVER);
+                writeRoverParameters(out, s.name(), s.batteryCapacity(), s.cameraRange(), s.antennaRange(),
+                        s.movementEnergyCost(), s.rechargeEnergyAmount());
+                out.putInt(s.samplesCapacity());
+                out.putInt(s.miningSampleEnergyCost());
+                out.putInt(carriedSamples);
+            }
+            case SimpleRover s -> {
+                out.putByte(SIMPLE_ROVER);
+                writeRoverParameters(out, s.name(), s.batteryCapacity(), s.cameraRange(), s.antennaRange(),
+                        s.movementEnergyCost(), s.rechargeEnergyAmount());
+            }
+            default -> throw new IllegalArgumentException("Cannot encode " + rover.getClass().getName());
+        }
+        out.putInt(battery);
+    }
+
+    private static void writeRoverParameters(ChannelEncoder out, String name, int batteryCapacity, int cameraRange,
+            int antennaRange, int movementEnergyCost, int rechargeEnergyAmount) throws IOException {
+        out.putString(name);
+        out.putInt(batteryCapacity);
+        out.putInt(cameraRange);
+        out.putInt(antennaRange);
+        out.putInt(movementEnergyCost);
+        out.putInt(rechargeEnergyAmount);
+    }
+
+    static Rover readRover(ChannelDecoder in) throws IOException {
+        final var kind = in.getByte();
+        final var name = in.getString();
+        final var batteryCapacity = in.getInt();
+        final var cameraRange = in.getInt();
+        final var antennaRange = in.getInt();
+        final var movementEnergyCost = in.getInt();
+        final var rechargeEnergyAmount = in.getInt();
+        switch (kind) {
+            case SCIENTIST_ROVER -> {
+                final var samplesCapacity = in.getInt();
+                final var miningSampleEnergyCost = in.getInt();
+                final var carriedSamples = in.getInt();
+                final var rover = new ScientistRover(name, in.getInt(), batteryCapacity, cameraRange, antennaRange,
+                        movementEnergyCost, rechargeEnergyAmount, samplesCapacity, miningSampleEnergyCost);
+                rover.restoreCarriedSamples(carriedSamples);
+                return rover;
+            }
+            case SIMPLE_ROVER -> {
+                return new SimpleRover(name, in.getInt(), batteryCapacity, cameraRange, antennaRange,
+                        movementEnergyCost, rechargeEnergyAmount);
+            }
+            default -> throw new IOException("Unknown rover kind " + kind);
+        }
+    }
+
+    private static void writeView(ChannelEncoder out, MarsView view) throws IOException {
+        out.putCells(view.knownCells());
+    }
+
+    // The distances to the base and the known area are not in the checkpoint, they are computed again
+    private static void readView(ChannelDecoder in, Mars mars, HasViewOfMars h) throws IOException {
+        final var cells = in.getCells();
+        h.marsView().restore(cells);
+        mars.cellsKnownBy(h, cells);
+    }
+}
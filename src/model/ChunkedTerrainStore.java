@@ -0,0 +1,152 @@
+package src.model;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Terrain generated lazily, one chunk (see {@link TerrainGenerator}) the first time one of its cells is read
+ * or written, so that startup and memory are proportional to the visited area instead of the whole map.
+ * Modified chunks are kept forever. The others are regenerated on demand: when more than maxCachedChunks
+ * of them are loaded the least recently used ones are dropped.
+ */
+public class ChunkedTerrainStore implements TerrainStore {
+
+    private static final Terrain[] BY_CODE = {
+            Terrain.ofCode((byte) 0),
+            Terrain.ofCode((byte) 1),
+            Terrain.ofCode((byte) 2),
+            Terrain.ofCode((byte) 3),
+            Terrain.ofCode((byte) 4) };
+
+    private static final class Chunk {
+        private final byte[] cells;
+        // Only changed inside a compute of the chunks map, see put and evict
+        private volatile boolean modified = false;
+        private volatile long lastUsed;
+
+        private Chunk(byte[] cells) {
+            this.cells = cells;
+        }
+    }
+
+    private final int maxCachedChunks;
+    private final Map<Long, Chunk> chunks = new ConcurrentHashMap<>();
+    private final AtomicLong clock = new AtomicLong();
+    private final AtomicInteger modifiedChunks = new AtomicInteger();
+    private TerrainGenerator generator;
+
+    public ChunkedTerrainStore(int maxCachedChunks) {
+        this.maxCachedChunks = Math.max(1, maxCachedChunks);
+    }
+
+    /** Nothing is generated now, only the generator is kept. */
+    @Override
+    public void generate(TerrainGenerator generator, int bound) {
+        this.generator = generator;
+    }
+
+    @Override
+    public Terrain get(Coordinates coordinates) {
+        final var chunk = chunkAt(coordinates);
+        return BY_CODE[chunk.cells[TerrainGenerator.indexInChunk(coordinates.x(), coordinates.y())]];
+    }
+
+    @Override
+    public void put(Coordinates coordinates, Terrain terrain) {
+        // Marked while no eviction of the chunk can be in progress
+        final var chunk = chunks.compute(keyOf(coordinates), (key, c) -> {
+            final var loaded = c != null ? c : load(coordinates);
+            if (!loaded.modified) {
+                loaded.modified = true;
+                modifiedChunks.incrementAndGet();
+            }
+            return loaded;
+        });
+        chunk.cells[TerrainGenerator.indexInChunk(coordinates.x(), coordinates.y())] = Terrain.codeOf(terrain);
+    }
+
+    public int maxCachedChunks() {
+        return maxCachedChunks;
+    }
+
+    TerrainGenerator generator() {
+        return generator;
+    }
+
+    /** Cells of the modified chunks by chunk key (x in the high half, y in the low one). */
+    Map<Long, byte[]> copyOfModifiedChunks() {
+        final var modified = new HashMap<Long, byte[]>();
+        chunks.forEach((key, chunk) -> {
+            if (chunk.modified) {
+                modified.put(key, chunk.cells.clone());
+            }
+        });
+        return modified;
+    }
+
+    /** Puts back a chunk modified before a checkpoint was taken, see {@link #copyOfModifiedChunks()}. */
+    void restoreChunk(long key, byte[] cells) {
+        if (cells.length != TerrainGenerator.CHUNK_SIDE * TerrainGenerator.CHUNK_SIDE) {
+            throw new IllegalArgumentException("Not a chunk: " + cells.length + " cells");
+        }
+        final var chunk = new Chunk(cells);
+        chunk.modified = true;
+        chunk.lastUsed = clock.incrementAndGet();
+        final var previous = chunks.put(key, chunk);
+        if (previous == null || !previous.modified) {
+            modifiedChunks.incrementAndGet();
+        }
+    }
+
+    /** Chunks currently in memory. */
+    public int loadedChunks() {
+        return chunks.size();
+    }
+
+    private Chunk chunkAt(Coordinates coordinates) {
+        final var key = keyOf(coordinates);
+        var chunk = chunks.get(key);
+        if (chunk == null) {
+            chunk = chunks.computeIfAbsent(key, k -> load(coordinates));
+            if (chunks.size() - modifiedChunks.get() > maxCachedChunks) {
+                evict();
+            }
+        }
+        // The clock only ticks when a chunk is loaded, reads of loaded chunks seldom write anything
+        final var now = clock.get();
+        if (chunk.lastUsed != now) {
+            chunk.lastUsed = now;
+        }
+        return chunk;
+    }
+
+    private Chunk load(Coordinates coordinates) {
+        if (generator == null) {
+            throw new IllegalStateException("Terrain read before being generated");
+        }
+        final var chunk = new Chunk(generator.chunk(TerrainGenerator.chunkOf(coordinates.x()),
+                TerrainGenerator.chunkOf(coordinates.y())));
+        chunk.lastUsed = clock.incrementAndGet();
+        return chunk;
+    }
+
+    // Drops a quarter of the cached chunks at a time, so that scanning them is paid once every many loads
+    private void evict() {
+        final var toEvict = chunks.size() - modifiedChunks.get() - maxCachedChunks * 3 / 4;
+        chunks.entrySet().stream()
+                .filter(e -> !e.getValue().modified)
+                .sorted(Comparator.comparingLong(e -> e.getValue().lastUsed))
+                .limit(Math.max(0, toEvict))
+                .map(Map.Entry::getKey)
+                .toList()
+                .forEach(key -> chunks.computeIfPresent(key, (k, c) -> c.modified ? c : null));
+    }
+
+    private static long keyOf(Coordinates c) {
+        return TerrainGenerator.chunkKey(c.x(), c.y());
+    }
+}
@@ -1,5 +1,9 @@
 package src.model;
 
+/**
+ * Default simulation parameters.
+ * Those of a run are in its {@link Settings}, where they can be overridden by name.
+ */
 public final class Config {
     public static final int MARS_SIZE = 35;
     public static final float MARS_OBSTACLES_DENSITY = 0.05f;
@@ -7,6 +11,10 @@ public final class Config {
     public static final float MARS_MINING_SPOTS_DENSITY = 0.01f;
     public static final int MARS_BASE_SIZE = 4;
     public static final int MARS_BASE_ANTENNA_RANGE = 7;
+    // Generate terrain lazily by chunks (see ChunkedTerrainStore), for maps too large to be generated up front
+    public static final boolean MARS_CHUNKED_TERRAIN = false;
+    // Chunks of 64x64 cells kept in memory besides the modified ones, with MARS_CHUNKED_TERRAIN
+    public static final int MARS_CACHED_CHUNKS = 4096;
     public static final int ROVER_BATTERY_CAPACITY = 100;
     public static final int ROVER_CAMERA_RANGE = 3;
     public static final int ROVER_ANTENNA_RANGE = 5;
@@ -20,4 +28,12 @@ public final class Config {
     public static final int COLLECT_SAMPLE_DURATION_MS = 2000;
     public static final int DEPOSIT_SAMPLES_DURATION_MS = 500;
     public static final double RANDOM_MOVEMENT_PROBABILITY = 0.1;
+    public static final boolean DELTA_PERCEPTS = false;
+    // How much faster than wall time the simulation runs, POSITIVE_INFINITY runs as fast as possible
+    public static final double TIME_SCALE = 1;
+    // At most how many times per second listeners (e.g. the GUI) are told about changes on Mars
+    public static final double MARS_NOTIFICATIONS_PER_SECOND = 30;
+
+    private Config() {
+    }
 }
@@ -0,0 +1,58 @@
+package src.model;
+
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Read-only set of all the coordinates inside a square centered in (0, 0).
+ * Nothing is materialized, coordinates are produced while iterating.
+ */
+public class CoordinatesSquare extends AbstractSet<Coordinates> {
+
+    private final int bound;
+
+    public CoordinatesSquare(int bound) {
+        this.bound = Math.abs(bound);
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof Coordinates c && Math.abs(c.x()) <= bound && Math.abs(c.y()) <= bound;
+    }
+
+    /** Integer.MAX_VALUE if there are more coordinates than that, as the Collection contract asks. */
+    @Override
+    public int size() {
+        final var side = bound * 2 + 1L;
+        return (int) Math.min(Integer.MAX_VALUE, side * side);
+    }
+
+    @Override
+    public Iterator<Coordinates> iterator() {
+        return new Iterator<>() {
+            private int x = -bound;
+            private int y = -bound;
+
+            @Override
+            public boolean hasNext() {
+                return x <= bound;
+            }
+
+            @Override
+            public Coordinates next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                final var c = new Coordinates(x, y);
+                if (y == bound) {
+                    y = -bound;
+                    x++;
+                } else {
+                    y++;
+                }
+                return c;
+            }
+        };
+    }
+}
@@ -0,0 +1,72 @@
+package src.model;
+
+/**
+ * Terrain of a square world stored as one byte per cell.
+ * Cells are laid out column by column: (x - negativeBound) * side + (y - negativeBound).
+ */
+public class DenseTerrainStore implements TerrainStore {
+
+    // Shared instances so that reading a cell does not allocate
+    private static final Terrain[] BY_CODE = {
+            Terrain.ofCode((byte) 0),
+            Terrain.ofCode((byte) 1),
+            Terrain.ofCode((byte) 2),
+            Terrain.ofCode((byte) 3),
+            Terrain.ofCode((byte) 4) };
+
+    private final int bound;
+    private final int side;
+    private final byte[] cells;
+
+    public DenseTerrainStore(int bound) {
+        this.bound = Math.abs(bound);
+        this.side = this.bound * 2 + 1;
+        this.cells = new byte[cellsIn(side)];
+    }
+
+    /** A store holding the given terrain codes, laid out as {@link #indexOf}. */
+    DenseTerrainStore(int bound, byte[] cells) {
+        this.bound = Math.abs(bound);
+        this.side = this.bound * 2 + 1;
+        if (cells.length != cellsIn(side)) {
+            throw new IllegalArgumentException("Expected " + cellsIn(side) + " cells, got " + cells.length);
+        }
+        this.cells = cells;
+    }
+
+    /** Cells of a square with the given side, if they fit in an array (larger maps need a chunked store). */
+    static int cellsIn(int side) {
+        final var cells = (long) side * side;
+        if (cells > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("A dense store cannot hold " + cells + " cells, use a chunked one");
+        }
+        return (int) cells;
+    }
+
+    @Override
+    public Terrain get(Coordinates coordinates) {
+        return BY_CODE[cells[indexOf(coordinates)]];
+    }
+
+    @Override
+    public void put(Coordinates coordinates, Terrain terrain) {
+        cells[indexOf(coordinates)] = Terrain.codeOf(terrain);
+    }
+
+    public int bound() {
+        return bound;
+    }
+
+    /** Terrain codes of every cell, laid out as {@link #indexOf}. */
+    byte[] copyOfCells() {
+        return cells.clone();
+    }
+
+    public int side() {
+        return side;
+    }
+
+    public int indexOf(Coordinates coordinates) {
+        return (coordinates.x() + bound) * side + (coordinates.y() + bound);
+    }
+}
@@ -0,0 +1,55 @@
+package src.model;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Offsets of the cells within a given radius from (0, 0), computed once per radius.
+ */
+final class DiscOffsets {
+
+    private static final Map<Integer, DiscOffsets> cache = new ConcurrentHashMap<>();
+
+    private final int[] dx;
+    private final int[] dy;
+
+    private DiscOffsets(int radius) {
+        final var r2 = radius * radius;
+        var count = 0;
+        for (int x = -radius; x <= radius; x++) {
+            for (int y = -radius; y <= radius; y++) {
+                if (x * x + y * y <= r2) {
+                    count++;
+                }
+            }
+        }
+        this.dx = new int[count];
+        this.dy = new int[count];
+        var i = 0;
+        for (int x = -radius; x <= radius; x++) {
+            for (int y = -radius; y <= radius; y++) {
+                if (x * x + y * y <= r2) {
+                    dx[i] = x;
+                    dy[i] = y;
+                    i++;
+                }
+            }
+        }
+    }
+
+    static DiscOffsets ofRadius(int radius) {
+        return cache.computeIfAbsent(Math.abs(radius), DiscOffsets::new);
+    }
+
+    int size() {
+        return dx.length;
+    }
+
+    int dx(int i) {
+        return dx[i];
+    }
+
+    int dy(int i) {
+        return dy[i];
+    }
+}
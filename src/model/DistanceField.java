@@ -0,0 +1,200 @@
+package src.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalInt;
+
+/**
+ * Steps needed to reach the base from each cell, walking only on cells that someone knows to be walkable.
+ * It is shared by every rover and kept up to date as cells become known (see {@link Mars#updateMarsViewOf}),
+ * instead of each rover looking for its way home on its own.
+ *
+ * Walkable cells never become obstacles (mining spots only turn into samples and then into empty cells), so
+ * a new walkable cell can only shorten distances: it gets the distance of its nearest neighbour plus one and
+ * the cells whose distance it shortens are relaxed from it, breadth first.
+ * Like {@link MarsView} distances are kept in pages laid out like the chunks of {@link ChunkedTerrainStore},
+ * created the first time one of their cells is known to be walkable.
+ */
+public class DistanceField {
+
+    /** Steps from a cell to the base and the directions of those that get one step closer to it. */
+    public record Way(int distance, List<Direction> steps) {
+    }
+
+    private static final int PAGE_CELLS = TerrainGenerator.CHUNK_SIDE * TerrainGenerator.CHUNK_SIDE;
+    // Not known to be walkable
+    private static final int NOT_WALKABLE = -2;
+    private static final int UNREACHABLE = -1;
+    private static final int[][] STEPS = { { 0, 1 }, { 0, -1 }, { -1, 0 }, { 1, 0 } };
+    private static final Direction[] DIRECTIONS = {
+            new Direction.Up(), new Direction.Down(), new Direction.Left(), new Direction.Right() };
+    private static final byte BASE = Terrain.codeOf(new Terrain.Base());
+    // By terrain code, so that adding cells does not allocate
+    private static final boolean[] WALKABLE = {
+            Mars.isWalkable(Terrain.ofCode((byte) 0)),
+            Mars.isWalkable(Terrain.ofCode((byte) 1)),
+            Mars.isWalkable(Terrain.ofCode((byte) 2)),
+            Mars.isWalkable(Terrain.ofCode((byte) 3)),
+            Mars.isWalkable(Terrain.ofCode((byte) 4)) };
+
+    private final Map<Long, int[]> pages = new HashMap<>();
+    // Cells are mostly read and written near the last one
+    private long lastPageKey;
+    private int[] lastPage;
+    // Cells (x in the high half, y in the low one) whose neighbours may get shorter distances, reused
+    private long[] queue = new long[64];
+
+    /** Adds the walkable cells of the batch which were not known to be walkable yet. */
+    synchronized public void cellsKnown(CellBatch cells) {
+        var queued = 0;
+        for (int i = 0; i < cells.size(); i++) {
+            final int x = cells.x(i), y = cells.y(i);
+            if (!isWalkable(cells.terrainCode(i)) || distanceAt(x, y) != NOT_WALKABLE) {
+                continue;
+            }
+            var distance = UNREACHABLE;
+            if (cells.terrainCode(i) == BASE) {
+                distance = 0;
+            } else {
+                for (final var step : STEPS) {
+                    final var neighbour = distanceAt(x + step[0], y + step[1]);
+                    if (neighbour >= 0 && (distance == UNREACHABLE || neighbour + 1 < distance)) {
+                        distance = neighbour + 1;
+                    }
+                }
+            }
+            pageFor(x, y)[TerrainGenerator.indexInChunk(x, y)] = distance;
+            if (distance != UNREACHABLE) {
+                queued = enqueue(queued, x, y);
+            }
+        }
+        relax(queued);
+    }
+
+    /** Steps from the cell to the base, empty if the way is not known. */
+    synchronized public OptionalInt distanceAt(Coordinates coordinates) {
+        final var distance = distanceAt(coordinates.x(), coordinates.y());
+        return distance < 0 ? OptionalInt.empty() : OptionalInt.of(distance);
+    }
+
+    /**
+     * Steps from the cell to the base as {@link #distanceAt(Coordinates)}, but a cell not known to be walkable
+     * (e.g. a mining spot, which rovers work on from a neighbouring cell) is reached through its nearest
+     * neighbour, one step further away.
+     */
+    synchronized public OptionalInt distanceToReach(Coordinates coordinates) {
+        final var distance = distanceToReach(coordinates.x(), coordinates.y());
+        return distance < 0 ? OptionalInt.empty() : OptionalInt.of(distance);
+    }
+
+    /**
+     * The directions in which a step from the cell gets one step closer to the base, as measured by
+     * {@link #distanceToReach(Coordinates)}.
+     */
+    synchronized public List<Direction> stepsTowardsBase(Coordinates coordinates) {
+        return stepsTowardsBase(coordinates.x(), coordinates.y(),
+                distanceToReach(coordinates.x(), coordinates.y()));
+    }
+
+    /**
+     * The way from the cell to the base as {@link #distanceToReach(Coordinates)} and
+     * {@link #stepsTowardsBase(Coordinates)}, read together so that they agree with each other.
+     */
+    synchronized public Optional<Way> wayToBase(Coordinates coordinates) {
+        final var distance = distanceToReach(coordinates.x(), coordinates.y());
+        return distance < 0
+                ? Optional.empty()
+                : Optional.of(new Way(distance, stepsTowardsBase(coordinates.x(), coordinates.y(), distance)));
+    }
+
+    private List<Direction> stepsTowardsBase(int x, int y, int distance) {
+        final var steps = new ArrayList<Direction>(STEPS.length);
+        if (distance > 0) {
+            for (int i = 0; i < STEPS.length; i++) {
+                if (distanceAt(x + STEPS[i][0], y + STEPS[i][1]) == distance - 1) {
+                    steps.add(DIRECTIONS[i]);
+                }
+            }
+        }
+        return steps;
+    }
+
+    // Cells in the queue have just got a shorter distance, their neighbours may get one too
+    private void relax(int queued) {
+        for (int head = 0; head < queued; head++) {
+            final int x = (int) (queue[head] >> 32), y = (int) queue[head];
+            final var next = distanceAt(x, y) + 1;
+            for (final var step : STEPS) {
+                final int nx = x + step[0], ny = y + step[1];
+                final var neighbour = distanceAt(nx, ny);
+                if (neighbour == UNREACHABLE || neighbour > next) {
+                    pageAt(nx, ny)[TerrainGenerator.indexInChunk(nx, ny)] = next;
+                    queued = enqueue(queued, nx, ny);
+                }
+            }
+        }
+    }
+
+    private int enqueue(int queued, int x, int y) {
+        if (queued == queue.length) {
+            queue = Arrays.copyOf(queue, queue.length * 2);
+        }
+        queue[queued] = (long) x << 32 | (y & 0xffffffffL);
+        return queued + 1;
+    }
+
+    private int distanceToReach(int x, int y) {
+        final var distance = distanceAt(x, y);
+        if (distance != NOT_WALKABLE) {
+            return distance;
+        }
+        var nearest = UNREACHABLE;
+        for (final var step : STEPS) {
+            final var neighbour = distanceAt(x + step[0], y + step[1]);
+            if (neighbour >= 0 && (nearest == UNREACHABLE || neighbour + 1 < nearest)) {
+                nearest = neighbour + 1;
+            }
+        }
+        return nearest;
+    }
+
+    private int distanceAt(int x, int y) {
+        final var page = pageAt(x, y);
+        return page == null ? NOT_WALKABLE : page[TerrainGenerator.indexInChunk(x, y)];
+    }
+
+    private static boolean isWalkable(byte terrainCode) {
+        return WALKABLE[terrainCode];
+    }
+
+    // Null if no cell of the page is known to be walkable
+    private int[] pageAt(int x, int y) {
+        final var key = TerrainGenerator.chunkKey(x, y);
+        if (lastPage == null || lastPageKey != key) {
+            final var page = pages.get(key);
+            if (page == null) {
+                return null;
+            }
+            lastPageKey = key;
+            lastPage = page;
+        }
+        return lastPage;
+    }
+
+    private int[] pageFor(int x, int y) {
+        final var page = pageAt(x, y);
+        if (page != null) {
+            return page;
+        }
+        final var created = new int[PAGE_CELLS];
+        Arrays.fill(created, NOT_WALKABLE);
+        pages.put(TerrainGenerator.chunkKey(x, y), created);
+        lastPageKey = TerrainGenerator.chunkKey(x, y);
+        lastPage = created;
+        return created;
+    }
+}
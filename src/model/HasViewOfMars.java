@@ -1,5 +1,23 @@
 package src.model;
 
+import java.util.Map;
+
 public interface HasViewOfMars {
     public MarsView marsView();
+
+    public default int knownCount() {
+        return marsView().knownCount();
+    }
+
+    public default boolean isKnown(Coordinates coordinates) {
+        return marsView().isKnown(coordinates);
+    }
+
+    public default Map<Coordinates, TerrainView.Known> knownTerrain() {
+        return marsView().knownTerrain();
+    }
+
+    public default CellBatch changesToSend(String peer) {
+        return marsView().changesToSend(peer);
+    }
 }
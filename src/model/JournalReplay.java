@@ -0,0 +1,273 @@
+package src.model;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+
+/**
+ * Applies an {@link ActionJournal} again to a freshly generated Mars, on the calling thread and as fast as
+ * possible: no agent runs and actions take no simulated time, so that a run can be reproduced and the
+ * model benchmarked on its own.
+ *
+ * Records are applied by sequence rather than in the order they were appended, see {@link ActionJournal}.
+ * Failed actions changed nothing and are skipped. Explore is applied as a move in the direction the rover
+ * actually took. A successful action failing again, or a rover spawning on a taken cell, counts as a
+ * divergence: e.g. the journal was replayed on a Mars generated differently.
+ */
+public final class JournalReplay implements Closeable {
+
+    /** How many records may wait for a missing one (lost in a crash) before it is given up on. */
+    private static final int MAX_WAITING_RECORDS = 1 << 16;
+
+    public record Result(long records, long actions, long skippedActions, long divergences, long elapsedNanos) {
+
+        public double actionsPerSecond() {
+            return actions / Math.max(1e-9, elapsedNanos / 1e9);
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT,
+                    "%d records, %d actions (%.0f/s), %d failed actions skipped, %d divergences in %.1f ms",
+                    records, actions, actionsPerSecond(), skippedActions, divergences, elapsedNanos / 1e6);
+        }
+    }
+
+    private sealed interface Record {
+        long sequence();
+    }
+
+    private record Spawn(long sequence, Rover rover, Coordinates coordinates) implements Record {
+    }
+
+    private record Performed(long sequence, int id, byte kind, boolean result, byte direction,
+            Coordinates coordinates) implements Record {
+    }
+
+    private record ViewUpdate(long sequence, int id, CellBatch cells) implements Record {
+    }
+
+    private final FileChannel channel;
+    private final ChannelDecoder in;
+    private final int bound;
+    private final int baseSide;
+    private final int baseAntennaRange;
+    private final long seed;
+    private final Map<Integer, String> names = new HashMap<>();
+
+    private JournalReplay(FileChannel channel) throws IOException {
+        this.channel = channel;
+        this.in = new ChannelDecoder(channel, ActionJournal.BUFFER_SIZE);
+        if (in.getInt() != ActionJournal.MAGIC) {
+            throw new IOException("Not a journal");
+        }
+        final var version = in.getInt();
+        if (version != ActionJournal.VERSION) {
+            throw new IOException("Unsupported journal version " + version);
+        }
+        this.bound = in.getInt();
+        this.baseSide = in.getInt();
+        this.baseAntennaRange = in.getInt();
+        this.seed = in.getLong();
+    }
+
+    /** Opens a journal, telling how to generate the Mars it has to be replayed on. */
+    public static JournalReplay open(Path path) throws IOException {
+        final var channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            return new JournalReplay(channel);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public int side() {
+        return bound * 2 + 1;
+    }
+
+    public int baseSide() {
+        return baseSide;
+    }
+
+    public int baseAntennaRange() {
+        return baseAntennaRange;
+    }
+
+    public long seed() {
+        return seed;
+    }
+
+    /**
+     * Applies the whole journal to the given Mars, which must be as the journaled one was when the journal
+     * started: freshly generated with the same parameters, or restored from the checkpoint the run resumed from.
+     */
+    public Result replayOn(Mars mars) throws IOException {
+        if (mars.positiveBound() != bound || mars.seed() != seed || mars.base().side() != baseSide) {
+            throw new IllegalArgumentException("The journal was not recorded on a Mars like this one");
+        }
+        final var start = System.nanoTime();
+        final var waiting = new PriorityQueue<Record>(Comparator.comparingLong(Record::sequence));
+        final var counts = new long[4];
+        long next = 0;
+        while (!in.atEnd()) {
+            final var record = read();
+            if (record.isEmpty()) {
+                continue;
+            }
+            waiting.add(record.get());
+            while (!waiting.isEmpty()
+                    && (waiting.peek().sequence() <= next || waiting.size() > MAX_WAITING_RECORDS)) {
+                final var r = waiting.poll();
+                apply(mars, r, counts);
+                next = Math.max(next, r.sequence() + 1);
+            }
+        }
+        // Records after one lost in a crash
+        while (!waiting.isEmpty()) {
+            apply(mars, waiting.poll(), counts);
+        }
+        mars.flushNotifications();
+        return new Result(counts[0], counts[1], counts[2], counts[3], System.nanoTime() - start);
+    }
+
+    // Empty for records naming a rover, which are not replayed
+    private Optional<Record> read() throws IOException {
+        final var kind = in.getByte();
+        switch (kind) {
+            case ActionJournal.ROVER -> {
+                names.put((int) in.getVar(), in.getString());
+                return Optional.empty();
+            }
+            case ActionJournal.SPAWN -> {
+                final var sequence = in.getVar();
+                in.getVar();
+                final var rover = Checkpoint.readRover(in);
+                return Optional.of(new Spawn(sequence, rover, new Coordinates(in.getInt(), in.getInt())));
+            }
+            case ActionJournal.ACTION -> {
+                final var sequence = in.getVar();
+                final var id = (int) in.getVar();
+                final var action = in.getByte();
+                final var result = in.getByte() != 0;
+                var direction = ActionJournal.NO_DIRECTION;
+                Coordinates coordinates = null;
+                switch (action) {
+                    case ActionJournal.EXPLORE, ActionJournal.MOVE -> direction = in.getByte();
+                    case ActionJournal.MINE_SAMPLE, ActionJournal.COLLECT_SAMPLE ->
+                        coordinates = new Coordinates(in.getInt(), in.getInt());
+                    case ActionJournal.RECHARGE, ActionJournal.DEPOSIT_SAMPLES -> {
+                    }
+                    default -> throw new IOException("Unknown action " + action);
+                }
+                return Optional.of(new Performed(sequence, id, action, result, direction, coordinates));
+            }
+            case ActionJournal.VIEW_UPDATE -> {
+                final var sequence = in.getVar();
+                final var id = (int) in.getVar();
+                return Optional.of(new ViewUpdate(sequence, id, in.getCells()));
+            }
+            default -> throw new IOException("Unknown journal record " + kind);
+        }
+    }
+
+    // counts: records, actions, skipped actions, divergences
+    private void apply(Mars mars, Record record, long[] counts) {
+        counts[0]++;
+        switch (record) {
+            case Spawn(var sequence, var rover, var coordinates) -> {
+                if (!mars.restore(rover, coordinates)) {
+                    counts[3]++;
+                }
+            }
+            case Performed p when !p.result() -> {
+                counts[1]++;
+                counts[2]++;
+            }
+            case Performed p -> {
+                counts[1]++;
+                final var action = actionOf(mars, p);
+                if (action.isEmpty() || !mars.performAction(action.get())) {
+                    counts[3]++;
+                }
+            }
+            case ViewUpdate(var sequence, var id, var cells) -> {
+                final var owner = holderOf(mars, id);
+                if (owner.isPresent()) {
+                    mars.updateMarsViewOf(owner.get(), cells);
+                } else {
+                    counts[3]++;
+                }
+            }
+        }
+    }
+
+    private Optional<Action> actionOf(Mars mars, Performed p) {
+        final var rover = mars.rover(names.getOrDefault(p.id(), ""));
+        if (rover.isEmpty()) {
+            return Optional.empty();
+        }
+        final var r = rover.get();
+        if (p.kind() == ActionJournal.EXPLORE || p.kind() == ActionJournal.MOVE) {
+            return Optional.of(new Action.Move(r, ActionJournal.directionOf(p.direction())));
+        }
+        if (p.kind() == ActionJournal.RECHARGE) {
+            return Optional.of(new Action.Recharge(r));
+        }
+        if (!(r instanceof ScientistRover scientist)) {
+            return Optional.empty();
+        }
+        return Optional.of(switch (p.kind()) {
+            case ActionJournal.MINE_SAMPLE -> new Action.MineSample(scientist, p.coordinates());
+            case ActionJournal.COLLECT_SAMPLE -> new Action.CollectSample(scientist, p.coordinates());
+            default -> new Action.DepositSamples(scientist);
+        });
+    }
+
+    private Optional<HasViewOfMars> holderOf(Mars mars, int id) {
+        if (id == ActionJournal.BASE_ID) {
+            return Optional.of(mars.base());
+        }
+        return mars.rover(names.getOrDefault(id, "")).map(r -> r);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Replays a journal on the Mars generated from its seed and the parameters of {@link Config},
+     * which can be overridden as NAME=value arguments after the journal file (see {@link Settings#with}).
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("Usage: JournalReplay <journal> [CONFIG_NAME=value...]");
+            System.exit(1);
+        }
+        var settings = Settings.DEFAULTS;
+        for (int i = 1; i < args.length; i++) {
+            final var separator = args[i].indexOf('=');
+            settings = settings.with(args[i].substring(0, separator), args[i].substring(separator + 1));
+        }
+        try (final var replay = open(Path.of(args[0]))) {
+            final var generation = System.nanoTime();
+            // The size of the map and of the base are those of the run
+            final var mars = new Mars(settings
+                    .with("MARS_SIZE", String.valueOf(replay.side()))
+                    .with("MARS_BASE_SIZE", String.valueOf(replay.baseSide()))
+                    .with("MARS_BASE_ANTENNA_RANGE", String.valueOf(replay.baseAntennaRange())),
+                    replay.seed());
+            System.out.printf(Locale.ROOT, "Mars generated in %.1f ms%n", (System.nanoTime() - generation) / 1e6);
+            System.out.println(replay.replayOn(mars));
+        }
+    }
+}
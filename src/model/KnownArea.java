@@ -0,0 +1,44 @@
+package src.model;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Cells known by at least one rover, counted as they become known so that how much of Mars has been
+ * explored is read in constant time. Cells are kept in pages laid out like the chunks of
+ * {@link ChunkedTerrainStore}, one bit each.
+ */
+class KnownArea {
+
+    private static final int PAGE_CELLS = TerrainGenerator.CHUNK_SIDE * TerrainGenerator.CHUNK_SIDE;
+
+    private final Map<Long, BitSet> pages = new HashMap<>();
+    private long count = 0;
+
+    synchronized void cellsKnown(CellBatch cells) {
+        BitSet page = null;
+        long pageKey = 0;
+        for (int i = 0; i < cells.size(); i++) {
+            final var key = TerrainGenerator.chunkKey(cells.x(i), cells.y(i));
+            if (page == null || key != pageKey) {
+                page = pages.computeIfAbsent(key, k -> new BitSet(PAGE_CELLS));
+                pageKey = key;
+            }
+            final var index = TerrainGenerator.indexInChunk(cells.x(i), cells.y(i));
+            if (!page.get(index)) {
+                page.set(index);
+                count++;
+            }
+        }
+    }
+
+    synchronized boolean contains(Coordinates c) {
+        final var page = pages.get(TerrainGenerator.chunkKey(c.x(), c.y()));
+        return page != null && page.get(TerrainGenerator.indexInChunk(c.x(), c.y()));
+    }
+
+    synchronized long count() {
+        return count;
+    }
+}
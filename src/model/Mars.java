@@ -1,28 +1,54 @@
 package src.model;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 
-import src.utils.MapWithDefault;
+import src.utils.Metrics;
 import src.utils.Tuple;
 import src.utils.V2D;
 
+/**
+ * Mars does not have a global lock so that rovers (and the GUI) can work in parallel:
+ * - geometry (bounds, base, ...) is immutable and read freely
+ * - terrain reads are optimistic and only fall back to a read lock if a write happened meanwhile
+ * - moves claim the destination cell with a compare and set
+ * - actions of a rover are not serialized here, callers perform one at a time (the environment's
+ *   ActionScheduler completes one action per agent at a time, and an agent waits for it before acting again)
+ * - views of Mars (MarsView) guard themselves
+ * - listeners are told about changes asynchronously (see {@link ChangeNotifier})
+ */
 public class Mars {
 
+    private static final int ROVER_INDEX_BUCKET_SIZE = 8;
+
+    /** What changed on Mars since listeners were last told: cells to be redrawn and rovers whose state changed. */
+    public record Change(Set<Coordinates> cells, Set<Rover> rovers) {
+    }
+
+    /** Listeners are told about changes from a background thread, see {@link #flushNotifications()}. */
     public interface Listener {
-        void marsUpdated();
+        void marsUpdated(Change change);
     }
 
-    private Random random;
+    private final long seed;
+    private final Random random;
     private final int bound;
     private final Base base;
     private final Coordinates baseCenter;
-    private final Map<Coordinates, Terrain> terrain = new MapWithDefault<>(new Terrain.Empty());
-    private final Map<Rover, Coordinates> roverCoordinates = new HashMap<>();
-    private final List<Listener> listeners = new ArrayList<>();
+    private final TerrainStore terrain;
+    private final StampedLock terrainLock = new StampedLock();
+    private final RoverIndex roverIndex;
+    private final ChangeNotifier notifier;
+    private final double randomMovementProbability;
     private final Set<Coordinates> allCoordinates;
+    private final AtomicInteger depositedSamples = new AtomicInteger();
+    private final DistanceField distanceToBase;
+    private final KnownArea knownArea = new KnownArea();
+    private volatile ActionJournal journal;
 
     public Mars(int squareSide, double obstaclesDensity, double samplesDensity, double miningSpotsDensity,
             int baseSquareSide, int baseAntennaRange) {
@@ -32,142 +58,204 @@ public class Mars {
 
     public Mars(int squareSide, double obstaclesDensity, double samplesDensity, double miningSpotsDensity,
             int baseSquareSide, int baseAntennaRange, long seed) {
-        this.random = new Random(seed);
-        this.bound = Math.abs(squareSide) / 2;
-        this.base = new Base(baseSquareSide, baseAntennaRange);
-        this.baseCenter = new Coordinates(0, 0);
+        this(squareSide, obstaclesDensity, samplesDensity, miningSpotsDensity, baseSquareSide, baseAntennaRange,
+                seed, new DenseTerrainStore(Math.abs(squareSide) / 2));
+    }
 
-        for (var x = base.negativeBound(); x <= base.positiveBound(); x++) {
-            for (var y = base.negativeBound(); y <= base.positiveBound(); y++) {
-                terrain.put(new Coordinates(x, y), new Terrain.Base());
-            }
-        }
+    /**
+     * @param terrain an empty store able to hold every coordinate inside the bounds, it is filled with the
+     *                terrain generated from the seed (see {@link TerrainStore#generate})
+     */
+    public Mars(int squareSide, double obstaclesDensity, double samplesDensity, double miningSpotsDensity,
+            int baseSquareSide, int baseAntennaRange, long seed, TerrainStore terrain) {
+        this(squareSide, obstaclesDensity, samplesDensity, miningSpotsDensity, baseSquareSide, baseAntennaRange,
+                seed, terrain, Settings.DEFAULTS);
+    }
 
-        final var s = IntStream.rangeClosed(negativeBound(),
-                positiveBound()).boxed().toList();
-        this.allCoordinates = s.stream()
-                .flatMap(x -> s.stream().map(y -> new Coordinates(x, y)))
-                .collect(Collectors.toSet());
+    /** Mars generated from the seed with the parameters of the given settings. */
+    public Mars(Settings settings, long seed) {
+        this(settings.marsSize(), settings.marsObstaclesDensity(), settings.marsSamplesDensity(),
+                settings.marsMiningSpotsDensity(), settings.marsBaseSize(), settings.marsBaseAntennaRange(), seed,
+                settings.newTerrainStore(), settings);
+    }
 
-        placeWithDensity(new Terrain.Obstacle(), obstaclesDensity);
-        placeWithDensity(new Terrain.MiningSpot(), miningSpotsDensity);
-        placeWithDensity(new Terrain.Sample(), samplesDensity);
+    private Mars(int squareSide, double obstaclesDensity, double samplesDensity, double miningSpotsDensity,
+            int baseSquareSide, int baseAntennaRange, long seed, TerrainStore terrain, Settings settings) {
+        this(Math.abs(squareSide) / 2, new Base(baseSquareSide, baseAntennaRange), seed, terrain, settings);
+
+        // The base takes no part in the draw, densities are scaled so that they still refer to the whole area
+        final var area = (long) (bound * 2 + 1) * (bound * 2 + 1);
+        final var scale = area / (double) Math.max(1, area - (long) base.side() * base.side());
+        terrain.generate(new TerrainGenerator(seed, obstaclesDensity * scale, miningSpotsDensity * scale,
+                samplesDensity * scale, base), bound);
     }
 
-    synchronized public void spawn(Rover r) {
+    /** Mars with the given terrain as it is, nothing is generated (see {@link Checkpoint}). */
+    Mars(int bound, Base base, long seed, TerrainStore terrain, Settings settings) {
+        this.seed = seed;
+        this.random = new Random(seed);
+        this.bound = bound;
+        this.base = base;
+        this.baseCenter = new Coordinates(0, 0);
+        this.terrain = terrain;
+        this.roverIndex = new RoverIndex(bound, ROVER_INDEX_BUCKET_SIZE);
+        this.allCoordinates = new CoordinatesSquare(bound);
+        this.distanceToBase = new DistanceField();
+        this.notifier = new ChangeNotifier(settings.marsNotificationsPerSecond());
+        this.randomMovementProbability = settings.randomMovementProbability();
+    }
+
+    public void spawn(Rover r) {
         var placed = false;
 
         // TODO: warning, infinite loop if there is no space left in base
         while (!placed) {
             final var coordinates = new Coordinates(randomInBaseBounds(), randomInBaseBounds());
-            if (!roverAtCoordinates(coordinates).isPresent()) {
-                roverCoordinates.put(r, coordinates);
+            if (roverIndex.tryClaim(r, coordinates)) {
+                final var journal = this.journal;
+                if (journal != null) {
+                    journal.stamp();
+                }
+                roverIndex.place(r, coordinates);
+                if (journal != null) {
+                    journal.spawned(r, coordinates);
+                }
+                notifier.changed(coordinates, r);
                 placed = true;
-                informListeners();
             }
         }
     }
 
-    private void placeWithDensity(Terrain t, double density) {
-        List<Coordinates> emptySpots = allCoordinates.stream()
-                .filter(c -> terrain.get(c) instanceof Terrain.Empty)
-                .collect(Collectors.toList());
-
-        Collections.shuffle(emptySpots, random);
-
-        int toPlace = (int) (area() * density);
-        for (int i = 0; i < Math.min(toPlace, emptySpots.size()); i++) {
-            terrain.put(emptySpots.get(i), t);
+    /** Places a rover where it was when a checkpoint was taken, false if the cell is taken. */
+    boolean restore(Rover r, Coordinates coordinates) {
+        if (!isInsideBounds(coordinates) || !roverIndex.tryClaim(r, coordinates)) {
+            return false;
         }
+        roverIndex.place(r, coordinates);
+        notifier.changed(coordinates, r);
+        return true;
     }
 
-    synchronized private int randomInBaseBounds() {
+    private int randomInBaseBounds() {
         return random.nextInt(base.negativeBound(), base.positiveBound() + 1);
     }
 
-    synchronized private int area() {
-        return side() * side();
+    public long area() {
+        return (long) side() * side();
     }
 
-    synchronized public int negativeBound() {
+    public int negativeBound() {
         return -bound;
     }
 
-    synchronized public int positiveBound() {
+    public int positiveBound() {
         return bound;
     }
 
-    synchronized public int side() {
+    public int side() {
         return bound * 2 + 1;
     }
 
-    synchronized public Terrain terrainAt(Coordinates coordinates) {
+    public Terrain terrainAt(Coordinates coordinates) {
         assert isInsideBounds(coordinates);
-        return terrain.get(coordinates);
+        var stamp = terrainLock.tryOptimisticRead();
+        var t = terrain.get(coordinates);
+        if (!terrainLock.validate(stamp)) {
+            stamp = terrainLock.readLock();
+            try {
+                t = terrain.get(coordinates);
+            } finally {
+                terrainLock.unlockRead(stamp);
+            }
+        }
+        return t;
     }
 
-    synchronized public Set<Rover> rovers() {
-        return roverCoordinates().keySet();
+    /** Runs the function on the terrain store while no terrain can be written. */
+    <T> T withTerrainReadLocked(Function<TerrainStore, T> function) {
+        final var stamp = terrainLock.readLock();
+        try {
+            return function.apply(terrain);
+        } finally {
+            terrainLock.unlockRead(stamp);
+        }
     }
 
-    synchronized public Optional<Rover> roverAtCoordinates(Coordinates coordinates) {
-        return roverCoordinates().entrySet().stream().filter(e -> e.getValue().equals(coordinates)).map(e -> e.getKey())
-                .findFirst();
+    private void setTerrain(Coordinates coordinates, Terrain t) {
+        final var stamp = terrainLock.writeLock();
+        try {
+            stampJournal();
+            terrain.put(coordinates, t);
+        } finally {
+            terrainLock.unlockWrite(stamp);
+        }
+        notifier.changed(coordinates, null);
     }
 
-    synchronized public Optional<Rover> rover(String name) {
-        return rovers().stream().filter(r -> r.name().equals(name)).findFirst();
+    public Set<Rover> rovers() {
+        return roverIndex.rovers();
     }
 
-    synchronized private boolean moveRover(Rover rover, Direction motion) {
-        final var coordinates = roverCoordinates.get(rover);
-        final var newCoordinates = coordinates.apply(motion);
-        if (canBeMovedOn(newCoordinates) && rover.move()) {
-            roverCoordinates.put(rover, newCoordinates);
-            return true;
-        } else {
+    public Optional<Rover> roverAtCoordinates(Coordinates coordinates) {
+        return roverIndex.at(coordinates);
+    }
+
+    public Optional<Rover> rover(String name) {
+        return roverIndex.named(name);
+    }
+
+    public Coordinates coordinatesOf(Rover rover) {
+        return roverIndex.coordinatesOf(rover);
+    }
+
+    private boolean moveRover(Rover rover, Direction motion) {
+        // Different rovers only compete for the destination cell
+        final var waitStart = System.nanoTime();
+        synchronized (rover) {
+            Metrics.recordSince(waitStart, "Mars.roverLockWait", rover.name());
+            final var newCoordinates = coordinatesOf(rover).apply(motion);
+            if (isInsideBounds(newCoordinates) && isWalkable(terrainAt(newCoordinates))
+                    && roverIndex.tryClaim(rover, newCoordinates)) {
+                if (rover.move()) {
+                    // Before leaving the cell, which someone else may then claim
+                    stampJournal();
+                    roverIndex.place(rover, newCoordinates);
+                    return true;
+                }
+                roverIndex.release(rover, newCoordinates);
+            }
             return false;
         }
     }
 
-    synchronized public List<Rover> reachableRovers(HasViewOfMars h) {
+    public List<Rover> reachableRovers(HasViewOfMars h) {
         final var coordAndRange = switch (h) {
             case Base b -> Tuple.of(baseCenter, b.antennaRange());
-            case Rover r -> Tuple.of(roverCoordinates().get(h), r.antennaRange());
+            case Rover r -> Tuple.of(coordinatesOf(r), r.antennaRange());
             default -> throw new IllegalArgumentException();
         };
         final var myCoord = coordAndRange._1();
         final var myRange = coordAndRange._2();
-        final var reachableRovers = roverCoordinates().entrySet().stream()
-                .filter(e -> e.getKey() != h)
-                .filter(e -> e.getValue().distanceTo(myCoord) <= myRange)
-                .map(e -> e.getKey())
-                .toList();
+        final var reachableRovers = roverIndex.within(myCoord, myRange);
+        reachableRovers.remove(h);
         return reachableRovers;
     }
 
-    synchronized public boolean canReachBase(Rover rover) {
-        final var roverCoord = roverCoordinates().get(rover);
+    public boolean canReachBase(Rover rover) {
+        final var roverCoord = coordinatesOf(rover);
         return roverCoord.distanceTo(baseCenter) <= rover.antennaRange();
     }
 
-    synchronized public boolean exploredEverywhere(Rover rover) {
-        return rover.marsView().knownTerrain().size() == area();
+    public boolean exploredEverywhere(Rover rover) {
+        return rover.knownCount() == area();
     }
 
-    synchronized public Optional<Direction> bestExploreDirection(Rover rover) {
-        final var roverCoord = roverCoordinates().get(rover);
-        final var knownCoord = rover.marsView().knownTerrain().keySet();
-        final Function<Coordinates, Boolean> isBorder = coord -> coord.neighbours().stream()
-                .filter(n -> isInsideBounds(n))
-                .map(c -> knownCoord.contains(c))
-                .anyMatch(hasKnownNeighbour -> hasKnownNeighbour);
-
-        final var unknownCoord = allCoordinates.stream()
-                .filter(c -> !knownCoord.contains(c) && isBorder.apply(c))
-                .toList();
+    public Optional<Direction> bestExploreDirection(Rover rover) {
+        final var roverCoord = coordinatesOf(rover);
+        final var unknownCoord = rover.marsView().frontier();
 
         final var vector = unknownCoord.stream()
+                .filter(c -> isInsideBounds(c))
                 .map(c -> {
                     final double nearToRover = 1 / (c.distanceTo(roverCoord) - rover.cameraRange());
                     // final double nearToBase = 1 / c.distanceTo(baseCenter);
@@ -186,11 +274,14 @@ public class Mars {
                 .findFirst();
     }
 
-    synchronized public Set<Coordinates> allCoordinates() {
+    public Set<Coordinates> allCoordinates() {
         return allCoordinates;
     }
 
-    synchronized public boolean performAction(Action action) {
+    public boolean performAction(Action action) {
+        final var start = System.nanoTime();
+        final var rover = action.rover();
+        final var from = coordinatesOf(rover);
         final var res = switch (action) {
             case Action.Explore(var r) -> explore(r);
             case Action.Move(var r, var dir) -> moveRover(r, dir);
@@ -200,13 +291,23 @@ public class Mars {
             case Action.DepositSamples(var r) -> depositSamples(r);
             default -> false;
         };
-        informListeners();
+        final var to = coordinatesOf(rover);
+        notifier.moved(rover, from, to);
+        final var journal = this.journal;
+        if (journal != null) {
+            journal.performed(action, res, from, to);
+        }
+        final var type = action.getClass().getSimpleName();
+        if (!res) {
+            Metrics.add(1, "Mars.failedActions", type, rover.name());
+        }
+        Metrics.recordSince(start, "Mars.performAction", type, rover.name());
         return res;
     }
 
-    synchronized private boolean explore(Rover rover) {
+    private boolean explore(Rover rover) {
         Optional<Direction> direction;
-        if (random.nextDouble() <= Config.RANDOM_MOVEMENT_PROBABILITY) {
+        if (random.nextDouble() <= randomMovementProbability) {
             final var availableDirections = new ArrayList<>(availableDirections(rover));
             Collections.shuffle(availableDirections, random);
             direction = availableDirections.stream().findFirst();
@@ -216,8 +317,8 @@ public class Mars {
         return moveRover(rover, direction.orElse(Direction.random()));
     }
 
-    synchronized private boolean updateRoverBattery(Rover rover) {
-        final var roverCoord = roverCoordinates().get(rover);
+    private boolean updateRoverBattery(Rover rover) {
+        final var roverCoord = coordinatesOf(rover);
         if (terrainAt(roverCoord) instanceof Terrain.Base) {
             rover.recharge();
             return true;
@@ -226,122 +327,257 @@ public class Mars {
         }
     }
 
-    synchronized private boolean collectSample(ScientistRover rover, Coordinates sampleCoord) {
-        final var roverCoord = roverCoordinates().get(rover);
+    private boolean collectSample(ScientistRover rover, Coordinates sampleCoord) {
+        final var roverCoord = coordinatesOf(rover);
         // Distance < 2 --> adjacent
         if (roverCoord.distanceTo(sampleCoord) < 2 && rover.collectSample()) {
-            terrain.put(sampleCoord, new Terrain.Empty());
+            setTerrain(sampleCoord, new Terrain.Empty());
             return true;
         } else {
             return false;
         }
     }
 
-    synchronized private boolean mineSample(ScientistRover rover, Coordinates miningSpotCoord) {
-        final var roverCoord = roverCoordinates().get(rover);
+    private boolean mineSample(ScientistRover rover, Coordinates miningSpotCoord) {
+        final var roverCoord = coordinatesOf(rover);
         // Distance < 2 --> adjacent
         if (roverCoord.distanceTo(miningSpotCoord) < 2 && rover.mineSample()) {
-            terrain.put(miningSpotCoord, new Terrain.Sample());
+            setTerrain(miningSpotCoord, new Terrain.Sample());
             return true;
         } else {
             return false;
         }
     }
 
-    synchronized private boolean depositSamples(ScientistRover rover) {
-        final var roverCoord = roverCoordinates().get(rover);
+    private boolean depositSamples(ScientistRover rover) {
+        final var roverCoord = coordinatesOf(rover);
         if (terrainAt(roverCoord) instanceof Terrain.Base) {
-            rover.depositSamples();
+            depositedSamples.addAndGet(rover.depositSamples());
             return true;
         } else {
             return false;
         }
     }
 
-    synchronized private void informListeners() {
-        listeners.stream().forEach(Listener::marsUpdated);
+    private static String nameOf(HasViewOfMars h) {
+        return h instanceof Rover r ? r.name() : "base";
     }
 
-    synchronized public void addListener(Listener l) {
-        this.listeners.add(l);
+    private void viewChanged(HasViewOfMars h, CellBatch cells) {
+        notifier.changed(cells, h instanceof Rover r ? r : null);
     }
 
-    synchronized public void removeListener(Listener l) {
-        this.listeners.remove(l);
+    public void addListener(Listener l) {
+        notifier.addListener(l);
     }
 
-    synchronized private Set<Coordinates> radiusOver(Coordinates coordinates, int radius) {
-        final Set<Coordinates> result = new HashSet<>();
-        final var r2 = radius * radius;
-
-        for (int x = coordinates.x() - radius; x <= coordinates.x() + radius; x++) {
-            for (int y = coordinates.y() - radius; y <= coordinates.y() + radius; y++) {
-                int dx = x - coordinates.x();
-                int dy = y - coordinates.y();
-                final var c = new Coordinates(x, y);
-                if (dx * dx + dy * dy <= r2 && isInsideBounds(c)) {
-                    result.add(c);
-                }
+    public void removeListener(Listener l) {
+        notifier.removeListener(l);
+    }
+
+    /** Tells listeners about pending changes right away, on the calling thread. */
+    public void flushNotifications() {
+        notifier.flush();
+    }
+
+    /** Visits the coordinates inside Mars within the given radius from center. */
+    public void forEachInRadius(Coordinates center, int radius, Consumer<Coordinates> action) {
+        final var disc = DiscOffsets.ofRadius(radius);
+        for (int i = 0; i < disc.size(); i++) {
+            final var x = center.x() + disc.dx(i);
+            final var y = center.y() + disc.dy(i);
+            if (Math.abs(x) <= bound && Math.abs(y) <= bound) {
+                action.accept(new Coordinates(x, y));
             }
         }
+    }
+
+    private Set<Coordinates> radiusOver(Coordinates coordinates, int radius) {
+        final Set<Coordinates> result = new HashSet<>();
+        forEachInRadius(coordinates, radius, result::add);
         return result;
     }
 
-    synchronized public Set<Direction> availableDirections(Rover r) {
+    public Set<Direction> availableDirections(Rover r) {
         return Direction.all().stream()
-                .filter(d -> canBeMovedOn(roverCoordinates().get(r).apply(d)))
+                .filter(d -> canBeMovedOn(coordinatesOf(r).apply(d)))
                 .collect(Collectors.toSet());
     }
 
-    synchronized private boolean canBeMovedOn(Coordinates coordinates) {
-        return switch (terrainAt(coordinates)) {
+    private boolean canBeMovedOn(Coordinates coordinates) {
+        return isInsideBounds(coordinates) && isWalkable(terrainAt(coordinates))
+                && roverAtCoordinates(coordinates).isEmpty();
+    }
+
+    public static boolean isWalkable(Terrain t) {
+        return switch (t) {
             case Terrain.Obstacle() -> false;
             case Terrain.MiningSpot() -> false;
             default -> true;
-        } && roverAtCoordinates(coordinates).isEmpty() && isInsideBounds(coordinates);
+        };
     }
 
-    synchronized public Set<Coordinates> cameraRangeOf(Rover r) {
-        return radiusOver(roverCoordinates().get(r), r.cameraRange());
+    public Set<Coordinates> cameraRangeOf(Rover r) {
+        return radiusOver(coordinatesOf(r), r.cameraRange());
     }
 
-    synchronized public boolean isInsideBounds(Coordinates coordinates) {
-        return Math.abs(coordinates.x()) <= positiveBound() && Math.abs(coordinates.y()) <= positiveBound();
+    public boolean isInsideBounds(Coordinates coordinates) {
+        return Math.abs(coordinates.x()) <= bound && Math.abs(coordinates.y()) <= bound;
     }
 
-    synchronized public Set<Coordinates> antennaRangeOf(Rover r) {
-        return radiusOver(roverCoordinates().get(r), r.antennaRange());
+    public Set<Coordinates> antennaRangeOf(Rover r) {
+        return radiusOver(coordinatesOf(r), r.antennaRange());
     }
 
-    synchronized public Set<Coordinates> antennaRangeOfBase() {
+    public Set<Coordinates> antennaRangeOfBase() {
         return radiusOver(baseCenter, base.antennaRange());
     }
 
-    synchronized public Set<Coordinates> knownArea() {
-        return rovers().stream().map(r -> r.marsView().knownTerrain().keySet()).flatMap(Set::stream)
+    /** Visits the cells within camera range of the rover without collecting them. */
+    public void forEachInCameraRangeOf(Rover r, Consumer<Coordinates> action) {
+        forEachInRadius(coordinatesOf(r), r.cameraRange(), action);
+    }
+
+    /** Visits the cells within antenna range of the rover without collecting them. */
+    public void forEachInAntennaRangeOf(Rover r, Consumer<Coordinates> action) {
+        forEachInRadius(coordinatesOf(r), r.antennaRange(), action);
+    }
+
+    /** Visits the cells within antenna range of the base without collecting them. */
+    public void forEachInAntennaRangeOfBase(Consumer<Coordinates> action) {
+        forEachInRadius(baseCenter, base.antennaRange(), action);
+    }
+
+    public Set<Coordinates> knownArea() {
+        return rovers().stream().map(r -> r.knownTerrain().keySet()).flatMap(Set::stream)
                 .collect(Collectors.toSet());
     }
 
-    synchronized public void updateMarsViewOf(HasViewOfMars h, Coordinates c, Terrain t) {
-        h.marsView().updateView(c, new TerrainView.Known(t));
-        informListeners();
+    /** Count of the cells known by at least one rover, as {@code knownArea().size()} but in constant time. */
+    public long knownAreaSize() {
+        return knownArea.count();
+    }
+
+    /** Whether at least one rover knows the cell, in constant time. */
+    public boolean isKnownByAnyRover(Coordinates c) {
+        return knownArea.contains(c);
+    }
+
+    /** Keeps what is derived from the views of Mars up to date with cells that h has just got to know. */
+    void cellsKnownBy(HasViewOfMars h, CellBatch cells) {
+        distanceToBase.cellsKnown(cells);
+        if (h instanceof Rover) {
+            knownArea.cellsKnown(cells);
+        }
+    }
+
+    /** Updates a cell as observed now. */
+    public void updateMarsViewOf(HasViewOfMars h, Coordinates c, Terrain t) {
+        updateMarsViewOf(h, new CellBatch.Builder().add(c, t, System.currentTimeMillis()).build());
+    }
+
+    /** Updates many cells at once. */
+    public void updateMarsViewOf(HasViewOfMars h, CellBatch cells) {
+        final var view = h.marsView();
+        final var waitStart = System.nanoTime();
+        synchronized (view) {
+            Metrics.recordSince(waitStart, "Mars.viewLockWait", nameOf(h));
+            view.updateView(cells);
+            stampJournal();
+        }
+        final var journal = this.journal;
+        if (journal != null) {
+            journal.viewUpdated(h, cells);
+        }
+        cellsKnownBy(h, cells);
+        viewChanged(h, cells);
+    }
+
+    /**
+     * Merges knowledge received from someone else, keeping the newest data.
+     * @return the cells that were actually merged
+     */
+    public CellBatch mergeIntoMarsViewOf(HasViewOfMars h, CellBatch cells) {
+        return mergeIntoMarsViewOf(h, cells, Optional.empty());
+    }
+
+    /**
+     * Merges knowledge received from the given peer, keeping the newest data. What is merged will not
+     * be sent back to the peer, see {@link MarsView#changesToSend(String)}.
+     * @return the cells that were actually merged
+     */
+    public CellBatch mergeIntoMarsViewOf(HasViewOfMars h, CellBatch cells, Optional<String> from) {
+        final var view = h.marsView();
+        final var waitStart = System.nanoTime();
+        final CellBatch merged;
+        // The view is locked by its own methods anyway, locking it here first tells how long others held it
+        synchronized (view) {
+            Metrics.recordSince(waitStart, "Mars.viewLockWait", nameOf(h));
+            merged = from.map(peer -> view.merge(cells, peer)).orElseGet(() -> view.merge(cells));
+            if (!merged.isEmpty()) {
+                stampJournal();
+            }
+        }
+        if (!merged.isEmpty()) {
+            // Merged cells were set like any update
+            final var journal = this.journal;
+            if (journal != null) {
+                journal.viewUpdated(h, merged);
+            }
+            cellsKnownBy(h, merged);
+            viewChanged(h, merged);
+        }
+        return merged;
+    }
+
+    /** Updates many cells as observed now. */
+    public void updateMarsViewOf(HasViewOfMars h, Map<Coordinates, Terrain> updates) {
+        final var now = System.currentTimeMillis();
+        final var cells = new CellBatch.Builder();
+        updates.forEach((c, t) -> cells.add(c, t, now));
+        updateMarsViewOf(h, cells.build());
+    }
+
+    public Map<Rover, Coordinates> roverCoordinates() {
+        return roverIndex.snapshot();
+    }
+
+    /** Distances to the base over the cells known by anyone, shared by every rover. */
+    public DistanceField distanceToBase() {
+        return distanceToBase;
+    }
+
+    /** Samples deposited in the base since the beginning. */
+    public int depositedSamples() {
+        return depositedSamples.get();
+    }
+
+    /** Journals changes to the given journal from now on, or stops journaling them if null. */
+    void journalTo(ActionJournal journal) {
+        this.journal = journal;
+    }
+
+    private void stampJournal() {
+        final var journal = this.journal;
+        if (journal != null) {
+            journal.stamp();
+        }
     }
 
-    synchronized public void updateMarsViewOf(HasViewOfMars h, Map<Coordinates, Terrain> updates) {
-        h.marsView().updateView(updates.entrySet().stream()
-                .collect(Collectors.toMap(e -> e.getKey(), e -> new TerrainView.Known(e.getValue()))));
-        informListeners();
+    void restoreDepositedSamples(int samples) {
+        depositedSamples.set(samples);
     }
 
-    synchronized public Map<Rover, Coordinates> roverCoordinates() {
-        return Map.copyOf(roverCoordinates);
+    /** Seed the map was generated from. */
+    public long seed() {
+        return seed;
     }
 
-    synchronized public Base base() {
+    public Base base() {
         return base;
     }
 
-    synchronized public Coordinates baseCenterCoordinates() {
+    public Coordinates baseCenterCoordinates() {
         return baseCenter;
     }
 }
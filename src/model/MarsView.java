@@ -1,25 +1,435 @@
 package src.model;
 
 import java.util.*;
-import java.util.stream.Collectors;
-import src.utils.MapWithDefault;
 
+/**
+ * What someone knows about Mars.
+ * Known cells are kept in pages of {@link TerrainGenerator#CHUNK_SIDE} squared cells, laid out like the
+ * chunks of {@link ChunkedTerrainStore}, created the first time one of their cells gets known: memory is
+ * proportional to the explored area however large Mars is. In each page known cells are tracked by a
+ * bitset and their terrain by a byte per cell.
+ * Each known cell also keeps the time it was observed, used to keep the newest data when merging
+ * knowledge from others.
+ *
+ * Updates are appended to a change log, with the peer they were merged from if any, so that sending
+ * a peer what changed since the last exchange with it costs as much as the changes (see
+ * {@link #changesToSend(String)}) and what came from that peer is not sent back to it.
+ * The version of the view is the count of updates so far. When the log gets long only the last update
+ * of each cell is kept, then the oldest updates are dropped: peers which were sent nothing since then
+ * get every known cell again.
+ */
 public class MarsView {
 
-    private final Map<Coordinates, TerrainView> view = new MapWithDefault<>(new TerrainView.Unknown());
+    private static final int PAGE_CELLS = TerrainGenerator.CHUNK_SIDE * TerrainGenerator.CHUNK_SIDE;
+    private static final int MIN_LOGGED_UPDATES = 1 << 12;
+    // Not merged from a peer
+    private static final int NO_PEER = 0;
 
-    synchronized public Map<Coordinates, TerrainView.Known> knownTerrain() {
-        return view.entrySet()
-                .stream()
-                .filter(entry -> entry.getValue() instanceof TerrainView.Known)
-                .collect(Collectors.toMap(e -> e.getKey(), e -> (TerrainView.Known) e.getValue()));
+    private static final class Page {
+        private final BitSet known = new BitSet(PAGE_CELLS);
+        private final byte[] terrain = new byte[PAGE_CELLS];
+        // When cells were observed, in ms since the timestampBase of the view. They are widened to longs
+        // if one does not fit an int (about 24 days before or after the first observation).
+        private int[] timestamps = new int[PAGE_CELLS];
+        private long[] wideTimestamps;
+    }
+
+    // Ordered by key so that known cells are always walked in the same order, see nextKnownAfter
+    private final TreeMap<Long, Page> pages = new TreeMap<>();
+    // Cells are mostly read and written near the last one
+    private long lastPageKey;
+    private Page lastPage;
+    private long timestampBase;
+    private boolean hasTimestampBase = false;
+
+    private long version = 0;
+    // Change log: cell (x in the high half, y in the low one), version and peer (see peerIds) of each update
+    private long[] loggedCells = new long[64];
+    private long[] loggedVersions = new long[64];
+    private int[] loggedFrom = new int[64];
+    private int logged = 0;
+    // Updates up to this version are no longer in the log
+    private long dropped = 0;
+    // Version of this view when changes were last sent to each peer
+    private final Map<String, Long> sentTo = new HashMap<>();
+    private final Map<String, Integer> peerIds = new HashMap<>();
+    private int knownCount = 0;
+    // Unknown cells with at least one known neighbour, kept up to date as cells become known.
+    // It may contain cells outside of Mars bounds since the view does not know them.
+    private final Set<Coordinates> frontier = new HashSet<>();
+    private final Map<Coordinates, TerrainView.Known> knownTerrain = new KnownTerrain();
+
+    /**
+     * Read-only view of the known cells, it is not a copy so it reflects later updates.
+     */
+    public Map<Coordinates, TerrainView.Known> knownTerrain() {
+        return knownTerrain;
+    }
+
+    synchronized public int knownCount() {
+        return knownCount;
+    }
+
+    synchronized public boolean isKnown(Coordinates coord) {
+        return isKnown(coord.x(), coord.y());
+    }
+
+    synchronized public TerrainView terrainAt(Coordinates coord) {
+        if (isKnown(coord)) {
+            return new TerrainView.Known(Terrain.ofCode(pageAt(coord.x(), coord.y()).terrain[indexOf(coord)]));
+        } else {
+            return new TerrainView.Unknown();
+        }
+    }
+
+    /** When the terrain of a known cell was observed, 0 if unknown. */
+    synchronized public long timestampAt(Coordinates coord) {
+        return isKnown(coord) ? timestampAt(pageAt(coord.x(), coord.y()), indexOf(coord)) : 0;
+    }
+
+    /** The known cells having one of the given terrains. */
+    synchronized public CellBatch cellsWith(Set<Terrain> terrains) {
+        final var codes = new boolean[Byte.MAX_VALUE];
+        terrains.forEach(t -> codes[Terrain.codeOf(t)] = true);
+        final var cells = new CellBatch.Builder();
+        pages.forEach((key, page) -> {
+            for (int i = page.known.nextSetBit(0); i >= 0; i = page.known.nextSetBit(i + 1)) {
+                if (codes[page.terrain[i]]) {
+                    addCell(cells, key, page, i);
+                }
+            }
+        });
+        return cells.build();
+    }
+
+    /** Every known cell, page by page. */
+    synchronized CellBatch knownCells() {
+        final var cells = new CellBatch.Builder();
+        pages.forEach((key, page) -> {
+            for (int i = page.known.nextSetBit(0); i >= 0; i = page.known.nextSetBit(i + 1)) {
+                addCell(cells, key, page, i);
+            }
+        });
+        return cells.build();
+    }
+
+    synchronized public Set<Coordinates> frontier() {
+        return Set.copyOf(frontier);
     }
 
     synchronized public void updateView(Map<Coordinates, TerrainView.Known> updates) {
-        updates.forEach((c, t) -> view.put(c, t));
+        updates.forEach((c, t) -> updateView(c, t));
+    }
+
+    /** Updates a cell as observed now. */
+    synchronized public void updateView(Coordinates coord, TerrainView.Known t) {
+        updateView(coord, t, System.currentTimeMillis());
+    }
+
+    synchronized public void updateView(Coordinates coord, TerrainView.Known t, long timestamp) {
+        set(coord.x(), coord.y(), Terrain.codeOf(t.terrain()), timestamp, NO_PEER);
+    }
+
+    synchronized public void updateView(CellBatch cells) {
+        for (int i = 0; i < cells.size(); i++) {
+            set(cells.x(i), cells.y(i), cells.terrainCode(i), cells.timestamp(i), NO_PEER);
+        }
+    }
+
+    /**
+     * Fills a view which knows nothing yet with the given cells (see {@link Checkpoint}),
+     * the frontier is computed once at the end instead of cell by cell.
+     */
+    synchronized void restore(CellBatch cells) {
+        if (knownCount > 0) {
+            throw new IllegalStateException("Only an empty view can be restored");
+        }
+        for (int i = 0; i < cells.size(); i++) {
+            final var page = pageFor(cells.x(i), cells.y(i));
+            final var index = TerrainGenerator.indexInChunk(cells.x(i), cells.y(i));
+            page.terrain[index] = cells.terrainCode(i);
+            setTimestamp(page, index, cells.timestamp(i));
+            if (!page.known.get(index)) {
+                page.known.set(index);
+                knownCount++;
+            }
+        }
+        // Not logged, peers get every known cell the first time
+        version += cells.size();
+        dropped = version;
+        pages.forEach((key, page) -> {
+            for (int i = page.known.nextSetBit(0); i >= 0; i = page.known.nextSetBit(i + 1)) {
+                final var cell = TerrainGenerator.cellOf(key, i);
+                for (int dx = -1; dx <= 1; dx++) {
+                    for (int dy = -1; dy <= 1; dy++) {
+                        if (!isKnown(cell.x() + dx, cell.y() + dy)) {
+                            frontier.add(new Coordinates(cell.x() + dx, cell.y() + dy));
+                        }
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Merges the cells of the batch which are unknown or older here.
+     * @return the merged cells
+     */
+    synchronized public CellBatch merge(CellBatch batch) {
+        return merge(batch, NO_PEER);
+    }
+
+    /**
+     * Merges the cells of the batch sent by the given peer which are unknown or older here,
+     * they will not be sent back to it.
+     * @return the merged cells
+     */
+    synchronized public CellBatch merge(CellBatch batch, String from) {
+        return merge(batch, peerIdOf(from));
+    }
+
+    private CellBatch merge(CellBatch batch, int from) {
+        final var merged = new CellBatch.Builder();
+        for (int i = 0; i < batch.size(); i++) {
+            final int x = batch.x(i), y = batch.y(i);
+            final var page = pageAt(x, y);
+            final var index = TerrainGenerator.indexInChunk(x, y);
+            if (page == null || !page.known.get(index) || timestampAt(page, index) < batch.timestamp(i)) {
+                set(x, y, batch.terrainCode(i), batch.timestamp(i), from);
+                merged.add(x, y, batch.terrainCode(i), batch.timestamp(i));
+            }
+        }
+        return merged.build();
+    }
+
+    /**
+     * Cells updated since changes were last sent to the given peer (all the known ones the first time),
+     * except those last merged from the peer itself. The peer is then considered up to date.
+     * Updates are counted even if the terrain did not change since they may come with a newer timestamp.
+     */
+    synchronized public CellBatch changesToSend(String peer) {
+        final long watermark = sentTo.getOrDefault(peer, 0L);
+        final CellBatch changes;
+        if (watermark < dropped) {
+            changes = knownCells();
+        } else {
+            final var peerId = peerIdOf(peer);
+            // Only the last update of a cell is sent, the log is walked backwards to find it
+            final var seen = new HashSet<Long>();
+            final var toSend = new ArrayList<Long>();
+            for (int i = logged - 1; i >= 0 && loggedVersions[i] > watermark; i--) {
+                if (seen.add(loggedCells[i]) && loggedFrom[i] != peerId) {
+                    toSend.add(loggedCells[i]);
+                }
+            }
+            final var cells = new CellBatch.Builder();
+            for (int i = toSend.size() - 1; i >= 0; i--) {
+                final int x = (int) (toSend.get(i) >> 32), y = (int) (long) toSend.get(i);
+                final var page = pageAt(x, y);
+                final var index = TerrainGenerator.indexInChunk(x, y);
+                cells.add(x, y, page.terrain[index], timestampAt(page, index));
+            }
+            changes = cells.build();
+        }
+        sentTo.put(peer, version);
+        return changes;
     }
 
-    synchronized public void updateView(Coordinates coord, TerrainView.Known terrain) {
-        view.put(coord, terrain);
+    private int peerIdOf(String peer) {
+        return peerIds.computeIfAbsent(peer, p -> peerIds.size() + 1);
+    }
+
+    private void set(int x, int y, byte terrainCode, long timestamp, int from) {
+        final var page = pageFor(x, y);
+        final var index = TerrainGenerator.indexInChunk(x, y);
+        page.terrain[index] = terrainCode;
+        setTimestamp(page, index, timestamp);
+        log((long) x << 32 | (y & 0xffffffffL), from);
+        if (!page.known.get(index)) {
+            page.known.set(index);
+            knownCount++;
+            final var coord = new Coordinates(x, y);
+            frontier.remove(coord);
+            coord.neighbours().stream()
+                    .filter(n -> !isKnown(n))
+                    .forEach(frontier::add);
+        }
+    }
+
+    private void log(long cell, int from) {
+        if (logged == loggedCells.length) {
+            if (logged >= maxLogged()) {
+                compactLog();
+            }
+            if (logged == loggedCells.length) {
+                loggedCells = Arrays.copyOf(loggedCells, logged * 2);
+                loggedVersions = Arrays.copyOf(loggedVersions, logged * 2);
+                loggedFrom = Arrays.copyOf(loggedFrom, logged * 2);
+            }
+        }
+        loggedCells[logged] = cell;
+        loggedVersions[logged] = ++version;
+        loggedFrom[logged] = from;
+        logged++;
+    }
+
+    private int maxLogged() {
+        return Math.max(MIN_LOGGED_UPDATES, knownCount / 8);
+    }
+
+    // Keeps the last update of each cell, then drops the oldest ones if they are still too many
+    private void compactLog() {
+        final var seen = new HashSet<Long>();
+        var kept = logged;
+        for (int i = logged - 1; i >= 0; i--) {
+            if (seen.add(loggedCells[i])) {
+                kept--;
+                loggedCells[kept] = loggedCells[i];
+                loggedVersions[kept] = loggedVersions[i];
+                loggedFrom[kept] = loggedFrom[i];
+            }
+        }
+        final var toDrop = Math.max(kept, logged - maxLogged() / 2);
+        if (toDrop > kept) {
+            dropped = loggedVersions[toDrop - 1];
+        }
+        logged -= toDrop;
+        System.arraycopy(loggedCells, toDrop, loggedCells, 0, logged);
+        System.arraycopy(loggedVersions, toDrop, loggedVersions, 0, logged);
+        System.arraycopy(loggedFrom, toDrop, loggedFrom, 0, logged);
+    }
+
+    private long timestampAt(Page page, int index) {
+        return page.wideTimestamps != null ? page.wideTimestamps[index] : timestampBase + page.timestamps[index];
+    }
+
+    private void setTimestamp(Page page, int index, long timestamp) {
+        if (!hasTimestampBase) {
+            timestampBase = timestamp;
+            hasTimestampBase = true;
+        }
+        if (page.wideTimestamps != null) {
+            page.wideTimestamps[index] = timestamp;
+        } else if (timestamp - timestampBase == (int) (timestamp - timestampBase)) {
+            page.timestamps[index] = (int) (timestamp - timestampBase);
+        } else {
+            page.wideTimestamps = new long[PAGE_CELLS];
+            for (int i = page.known.nextSetBit(0); i >= 0; i = page.known.nextSetBit(i + 1)) {
+                page.wideTimestamps[i] = timestampBase + page.timestamps[i];
+            }
+            page.timestamps = null;
+            page.wideTimestamps[index] = timestamp;
+        }
+    }
+
+    private void addCell(CellBatch.Builder cells, long key, Page page, int index) {
+        final var cell = TerrainGenerator.cellOf(key, index);
+        cells.add(cell.x(), cell.y(), page.terrain[index], timestampAt(page, index));
+    }
+
+    /** First known coordinate coming after the given one (page by page), null if there is none. */
+    synchronized private Coordinates nextKnownAfter(Coordinates coord) {
+        if (coord != null) {
+            final var key = TerrainGenerator.chunkKey(coord.x(), coord.y());
+            final var index = pages.get(key).known.nextSetBit(indexOf(coord) + 1);
+            if (index >= 0) {
+                return TerrainGenerator.cellOf(key, index);
+            }
+        }
+        // Pages are created when one of their cells gets known, none is empty
+        final var next = coord == null
+                ? pages.firstEntry()
+                : pages.higherEntry(TerrainGenerator.chunkKey(coord.x(), coord.y()));
+        return next == null ? null : TerrainGenerator.cellOf(next.getKey(), next.getValue().known.nextSetBit(0));
+    }
+
+    private boolean isKnown(int x, int y) {
+        final var page = pageAt(x, y);
+        return page != null && page.known.get(TerrainGenerator.indexInChunk(x, y));
+    }
+
+    private static int indexOf(Coordinates coord) {
+        return TerrainGenerator.indexInChunk(coord.x(), coord.y());
+    }
+
+    // Null if no cell of the page is known
+    private Page pageAt(int x, int y) {
+        final var key = TerrainGenerator.chunkKey(x, y);
+        if (lastPage == null || lastPageKey != key) {
+            final var page = pages.get(key);
+            if (page == null) {
+                return null;
+            }
+            lastPageKey = key;
+            lastPage = page;
+        }
+        return lastPage;
+    }
+
+    private Page pageFor(int x, int y) {
+        final var page = pageAt(x, y);
+        if (page != null) {
+            return page;
+        }
+        final var created = new Page();
+        pages.put(TerrainGenerator.chunkKey(x, y), created);
+        lastPageKey = TerrainGenerator.chunkKey(x, y);
+        lastPage = created;
+        return created;
+    }
+
+    // Since pages are walked in key order and cells column by column in them, iterating by "next known after"
+    // stays correct even if cells get known in the meantime.
+    private class KnownTerrain extends AbstractMap<Coordinates, TerrainView.Known> {
+
+        @Override
+        public int size() {
+            return knownCount();
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return key instanceof Coordinates c && isKnown(c);
+        }
+
+        @Override
+        public TerrainView.Known get(Object key) {
+            if (key instanceof Coordinates c && terrainAt(c) instanceof TerrainView.Known k) {
+                return k;
+            }
+            return null;
+        }
+
+        @Override
+        public Set<Entry<Coordinates, TerrainView.Known>> entrySet() {
+            return new AbstractSet<>() {
+                @Override
+                public int size() {
+                    return knownCount();
+                }
+
+                @Override
+                public Iterator<Entry<Coordinates, TerrainView.Known>> iterator() {
+                    return new Iterator<>() {
+                        private Coordinates next = nextKnownAfter(null);
+
+                        @Override
+                        public boolean hasNext() {
+                            return next != null;
+                        }
+
+                        @Override
+                        public Entry<Coordinates, TerrainView.Known> next() {
+                            if (next == null) {
+                                throw new NoSuchElementException();
+                            }
+                            final var c = next;
+                            next = nextKnownAfter(c);
+                            return Map.entry(c, (TerrainView.Known) terrainAt(c));
+                        }
+                    };
+                }
+            };
+        }
     }
 }
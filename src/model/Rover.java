@@ -11,6 +11,9 @@ public interface Rover extends HasViewOfMars {
 
     public int antennaRange();
 
+    /** Energy used by each move. */
+    public int movementEnergyCost();
+
     public boolean move();
 
     public void recharge();
@@ -0,0 +1,125 @@
+package src.model;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Keeps track of where rovers are.
+ * Each cell of the square holds at most one rover and is claimed with a compare and set,
+ * so rovers moving in different places never wait for each other.
+ * Rovers are also looked up by name, and radius queries only visit the buckets
+ * (squares of bucketSize cells) that overlap the circle.
+ * Cells are an array for squares up to MAX_DENSE_CELLS, a map for larger (mostly unvisited) ones.
+ */
+class RoverIndex {
+
+    private static final long MAX_DENSE_CELLS = 1 << 24;
+
+    private final int bound;
+    private final int side;
+    private final int bucketSize;
+    // Exactly one of them is used
+    private final AtomicReferenceArray<Rover> occupancy;
+    private final Map<Coordinates, Rover> sparseOccupancy;
+    private final Map<Rover, Coordinates> coordinates = new ConcurrentHashMap<>();
+    private final Map<String, Rover> byName = new ConcurrentHashMap<>();
+    private final Map<Coordinates, Set<Rover>> buckets = new ConcurrentHashMap<>();
+
+    RoverIndex(int bound, int bucketSize) {
+        this.bound = Math.abs(bound);
+        this.side = this.bound * 2 + 1;
+        this.bucketSize = Math.max(1, bucketSize);
+        final var dense = (long) side * side <= MAX_DENSE_CELLS;
+        this.occupancy = dense ? new AtomicReferenceArray<>(side * side) : null;
+        this.sparseOccupancy = dense ? null : new ConcurrentHashMap<>();
+    }
+
+    /** Reserves a free cell for the rover, false if someone is already there. */
+    boolean tryClaim(Rover rover, Coordinates c) {
+        return occupancy != null
+                ? occupancy.compareAndSet(indexOf(c), null, rover)
+                : sparseOccupancy.putIfAbsent(c, rover) == null;
+    }
+
+    /** Gives back a cell claimed by the rover that it will not move on. */
+    void release(Rover rover, Coordinates c) {
+        if (occupancy != null) {
+            occupancy.compareAndSet(indexOf(c), rover, null);
+        } else {
+            sparseOccupancy.remove(c, rover);
+        }
+    }
+
+    /**
+     * Records the rover on a cell it has claimed, freeing the one it was on (if any).
+     * Moves of the same rover must not run concurrently.
+     */
+    void place(Rover rover, Coordinates c) {
+        final var old = coordinates.put(rover, c);
+        if (old != null) {
+            release(rover, old);
+            final var oldBucket = bucketOf(old);
+            if (oldBucket.equals(bucketOf(c))) {
+                return;
+            }
+            buckets.get(oldBucket).remove(rover);
+        } else {
+            byName.put(rover.name(), rover);
+        }
+        buckets.computeIfAbsent(bucketOf(c), b -> ConcurrentHashMap.newKeySet()).add(rover);
+    }
+
+    Coordinates coordinatesOf(Rover rover) {
+        return coordinates.get(rover);
+    }
+
+    Optional<Rover> at(Coordinates c) {
+        if (Math.abs(c.x()) > bound || Math.abs(c.y()) > bound) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(occupancy != null ? occupancy.get(indexOf(c)) : sparseOccupancy.get(c));
+    }
+
+    Optional<Rover> named(String name) {
+        return Optional.ofNullable(byName.get(name));
+    }
+
+    Set<Rover> rovers() {
+        return Set.copyOf(coordinates.keySet());
+    }
+
+    Map<Rover, Coordinates> snapshot() {
+        return Map.copyOf(coordinates);
+    }
+
+    /** Rovers whose distance from center is at most radius. */
+    List<Rover> within(Coordinates center, double radius) {
+        final var r = (int) Math.ceil(radius);
+        final var result = new ArrayList<Rover>();
+        for (int bx = Math.floorDiv(center.x() - r, bucketSize); bx <= Math.floorDiv(center.x() + r,
+                bucketSize); bx++) {
+            for (int by = Math.floorDiv(center.y() - r, bucketSize); by <= Math.floorDiv(center.y() + r,
+                    bucketSize); by++) {
+                final var roversInBucket = buckets.get(new Coordinates(bx, by));
+                if (roversInBucket == null) {
+                    continue;
+                }
+                for (final var rover : roversInBucket) {
+                    if (coordinates.get(rover).distanceTo(center) <= radius) {
+                        result.add(rover);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    private int indexOf(Coordinates c) {
+        return (c.x() + bound) * side + (c.y() + bound);
+    }
+
+    private Coordinates bucketOf(Coordinates c) {
+        return new Coordinates(Math.floorDiv(c.x(), bucketSize), Math.floorDiv(c.y(), bucketSize));
+    }
+}
@@ -41,6 +41,15 @@ public class ScientistRover implements Rover {
         return rover.antennaRange();
     }
 
+    @Override
+    public int movementEnergyCost() {
+        return rover.movementEnergyCost();
+    }
+
+    public int rechargeEnergyAmount() {
+        return rover.rechargeEnergyAmount();
+    }
+
     @Override
     public MarsView marsView() {
         return this.rover.marsView();
@@ -56,11 +65,11 @@ public class ScientistRover implements Rover {
         rover.recharge();
     }
 
-    public int carriedSamples() {
+    synchronized public int carriedSamples() {
         return carriedSamples;
     }
 
-    public boolean collectSample() {
+    synchronized public boolean collectSample() {
         if (carriedSamples >= samplesCapacity) {
             return false;
         } else {
@@ -69,21 +78,24 @@ public class ScientistRover implements Rover {
         }
     }
 
+    /** Sets the samples carried when a checkpoint was taken. */
+    synchronized void restoreCarriedSamples(int samples) {
+        carriedSamples = samples;
+    }
+
     public int samplesCapacity() {
         return samplesCapacity;
     }
 
     public boolean mineSample() {
-        if (rover.battery() - miningSampleEnergyCost() < 0) {
-            return false;
-        } else {
-            rover.updateBatteryWith(-miningSampleEnergyCost);
-            return true;
-        }
+        return rover.consume(miningSampleEnergyCost);
     }
 
-    public void depositSamples() {
+    /** Empties the storage, returns how many samples were in it. */
+    synchronized public int depositSamples() {
+        final var deposited = carriedSamples;
         carriedSamples = 0;
+        return deposited;
     }
 
     public int miningSampleEnergyCost() {
@@ -0,0 +1,130 @@
+package src.model;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.RecordComponent;
+import java.util.*;
+
+/**
+ * Parameters of a run: the defaults in {@link Config}, some of which may be overridden by name (see {@link #with}).
+ * Settings are immutable and passed to whatever needs them, so every thread sees the same values and a run
+ * does not leak its parameters into the next one.
+ */
+public record Settings(
+        int marsSize,
+        float marsObstaclesDensity,
+        float marsSamplesDensity,
+        float marsMiningSpotsDensity,
+        int marsBaseSize,
+        int marsBaseAntennaRange,
+        boolean marsChunkedTerrain,
+        int marsCachedChunks,
+        int roverBatteryCapacity,
+        int roverCameraRange,
+        int roverAntennaRange,
+        int roverMovementEnergyCost,
+        int roverChargingEnergyAmount,
+        int scientistSamplesCapacity,
+        int scientistMiningSampleEnergyCost,
+        int movementDurationMs,
+        int rechargeDurationMs,
+        int mineSampleDurationMs,
+        int collectSampleDurationMs,
+        int depositSamplesDurationMs,
+        double randomMovementProbability,
+        boolean deltaPercepts,
+        double timeScale,
+        double marsNotificationsPerSecond) {
+
+    public static final Settings DEFAULTS = new Settings(
+            Config.MARS_SIZE,
+            Config.MARS_OBSTACLES_DENSITY,
+            Config.MARS_SAMPLES_DENSITY,
+            Config.MARS_MINING_SPOTS_DENSITY,
+            Config.MARS_BASE_SIZE,
+            Config.MARS_BASE_ANTENNA_RANGE,
+            Config.MARS_CHUNKED_TERRAIN,
+            Config.MARS_CACHED_CHUNKS,
+            Config.ROVER_BATTERY_CAPACITY,
+            Config.ROVER_CAMERA_RANGE,
+            Config.ROVER_ANTENNA_RANGE,
+            Config.ROVER_MOVEMENT_ENERGY_COST,
+            Config.ROVER_CHARGING_ENERGY_AMOUNT,
+            Config.SCIENTIST_SAMPLES_CAPACITY,
+            Config.SCIENTIST_MINING_SAMPLE_ENERGY_COST,
+            Config.MOVEMENT_DURATION_MS,
+            Config.RECHARGE_DURATION_MS,
+            Config.MINE_SAMPLE_DURATION_MS,
+            Config.COLLECT_SAMPLE_DURATION_MS,
+            Config.DEPOSIT_SAMPLES_DURATION_MS,
+            Config.RANDOM_MOVEMENT_PROBABILITY,
+            Config.DELTA_PERCEPTS,
+            Config.TIME_SCALE,
+            Config.MARS_NOTIFICATIONS_PER_SECOND);
+
+    /** These settings with a parameter overridden, named as in Config, e.g. with("MARS_SIZE", "100"). */
+    public Settings with(String name, String value) {
+        final var components = Settings.class.getRecordComponents();
+        final var values = new Object[components.length];
+        var found = false;
+        for (int i = 0; i < components.length; i++) {
+            if (nameOf(components[i]).equals(name)) {
+                values[i] = parse(components[i].getType(), name, value);
+                found = true;
+            } else {
+                values[i] = valueOf(components[i]);
+            }
+        }
+        if (!found) {
+            throw new IllegalArgumentException("Unknown parameter: " + name);
+        }
+        try {
+            return Settings.class.getDeclaredConstructor(
+                    Arrays.stream(components).map(RecordComponent::getType).toArray(Class<?>[]::new))
+                    .newInstance(values);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** Every parameter, named as in Config. */
+    public Map<String, Object> byName() {
+        final var values = new LinkedHashMap<String, Object>();
+        for (final var component : Settings.class.getRecordComponents()) {
+            values.put(nameOf(component), valueOf(component));
+        }
+        return values;
+    }
+
+    /** An empty store for the terrain of a Mars of marsSize, made of chunks with marsChunkedTerrain. */
+    public TerrainStore newTerrainStore() {
+        return marsChunkedTerrain
+                ? new ChunkedTerrainStore(marsCachedChunks)
+                : new DenseTerrainStore(Math.abs(marsSize) / 2);
+    }
+
+    // e.g. MARS_SIZE for marsSize
+    private static String nameOf(RecordComponent component) {
+        return component.getName().replaceAll("([a-z0-9])([A-Z])", "$1_$2").toUpperCase(Locale.ROOT);
+    }
+
+    private Object valueOf(RecordComponent component) {
+        try {
+            return component.getAccessor().invoke(this);
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Object parse(Class<?> type, String name, String value) {
+        if (type == int.class) {
+            return Integer.parseInt(value);
+        } else if (type == float.class) {
+            return Float.parseFloat(value);
+        } else if (type == double.class) {
+            return Double.parseDouble(value);
+        } else if (type == boolean.class) {
+            return Boolean.parseBoolean(value);
+        }
+        throw new IllegalArgumentException("Unsupported parameter type: " + name);
+    }
+}
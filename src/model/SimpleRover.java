@@ -27,7 +27,7 @@ public class SimpleRover implements Rover {
     }
 
     @Override
-    public int battery() {
+    synchronized public int battery() {
         return battery;
     }
 
@@ -46,6 +46,15 @@ public class SimpleRover implements Rover {
         return antennaRange;
     }
 
+    @Override
+    public int movementEnergyCost() {
+        return movementEnergyCost;
+    }
+
+    public int rechargeEnergyAmount() {
+        return rechargeEnergyAmount;
+    }
+
     @Override
     public MarsView marsView() {
         return this.marsView;
@@ -53,12 +62,7 @@ public class SimpleRover implements Rover {
 
     @Override
     public boolean move() {
-        if (battery() - movementEnergyCost < 0) {
-            return false;
-        } else {
-            updateBatteryWith(-movementEnergyCost);
-            return true;
-        }
+        return consume(movementEnergyCost);
     }
 
     @Override
@@ -66,7 +70,17 @@ public class SimpleRover implements Rover {
         updateBatteryWith(rechargeEnergyAmount);
     }
 
-    public void updateBatteryWith(int update) {
+    /** Uses the given amount of energy if the battery has enough, all at once. */
+    synchronized public boolean consume(int energy) {
+        if (battery - energy < 0) {
+            return false;
+        } else {
+            updateBatteryWith(-energy);
+            return true;
+        }
+    }
+
+    synchronized public void updateBatteryWith(int update) {
         battery = battery + update;
         battery = Math.min(batteryCapacity, battery);
         battery = Math.max(0, battery);
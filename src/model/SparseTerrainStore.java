@@ -0,0 +1,32 @@
+package src.model;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Hash map backed terrain, only non empty cells take up memory.
+ * Useful for very sparse or unbounded worlds, otherwise prefer {@link DenseTerrainStore}.
+ */
+public class SparseTerrainStore implements TerrainStore {
+
+    private final Map<Coordinates, Terrain> terrain = new ConcurrentHashMap<>();
+
+    /** The cells which are not empty. */
+    Map<Coordinates, Terrain> copyOfCells() {
+        return Map.copyOf(terrain);
+    }
+
+    @Override
+    public Terrain get(Coordinates coordinates) {
+        return terrain.getOrDefault(coordinates, new Terrain.Empty());
+    }
+
+    @Override
+    public void put(Coordinates coordinates, Terrain t) {
+        if (t instanceof Terrain.Empty) {
+            terrain.remove(coordinates);
+        } else {
+            terrain.put(coordinates, t);
+        }
+    }
+}
@@ -17,4 +17,26 @@ public sealed interface Terrain
 
     record Base() implements Terrain {
     }
+
+    /** Compact code of a terrain, Empty must stay 0 (default value of a fresh byte array). */
+    public static byte codeOf(Terrain t) {
+        return switch (t) {
+            case Empty() -> 0;
+            case Obstacle() -> 1;
+            case MiningSpot() -> 2;
+            case Sample() -> 3;
+            case Base() -> 4;
+        };
+    }
+
+    public static Terrain ofCode(byte code) {
+        return switch (code) {
+            case 0 -> new Empty();
+            case 1 -> new Obstacle();
+            case 2 -> new MiningSpot();
+            case 3 -> new Sample();
+            case 4 -> new Base();
+            default -> throw new IllegalArgumentException(String.valueOf(code));
+        };
+    }
 }
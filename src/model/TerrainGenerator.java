@@ -0,0 +1,132 @@
+package src.model;
+
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+/**
+ * Procedural terrain of Mars, split in square chunks of {@link #CHUNK_SIDE} cells.
+ * Each chunk only depends on (seed, chunkX, chunkY): it can be generated in any order, in parallel,
+ * or again later (see {@link ChunkedTerrainStore}) and it always comes out the same.
+ * Every cell draws a single number from the random stream of its chunk: a cell outside of the base
+ * becomes an obstacle, a mining spot or a sample with the probability given by their densities.
+ */
+public final class TerrainGenerator {
+
+    /** Changing it changes the map generated for a seed. */
+    public static final int CHUNK_SIDE = 64;
+
+    private static final byte BASE = Terrain.codeOf(new Terrain.Base());
+    private static final byte OBSTACLE = Terrain.codeOf(new Terrain.Obstacle());
+    private static final byte MINING_SPOT = Terrain.codeOf(new Terrain.MiningSpot());
+    private static final byte SAMPLE = Terrain.codeOf(new Terrain.Sample());
+
+    private final long seed;
+    private final double obstacleBelow;
+    private final double miningSpotBelow;
+    private final double sampleBelow;
+    private final int baseBound;
+
+    public TerrainGenerator(long seed, double obstaclesDensity, double miningSpotsDensity, double samplesDensity,
+            Base base) {
+        this(seed, obstaclesDensity, obstaclesDensity + miningSpotsDensity,
+                obstaclesDensity + miningSpotsDensity + samplesDensity, base.positiveBound());
+    }
+
+    /** A generator with the given thresholds, which are what {@link #thresholds()} returned. */
+    TerrainGenerator(long seed, double obstacleBelow, double miningSpotBelow, double sampleBelow, int baseBound) {
+        this.seed = seed;
+        this.obstacleBelow = obstacleBelow;
+        this.miningSpotBelow = miningSpotBelow;
+        this.sampleBelow = sampleBelow;
+        this.baseBound = baseBound;
+    }
+
+    long seed() {
+        return seed;
+    }
+
+    /** Upper bounds of the draws giving an obstacle, a mining spot and a sample. */
+    double[] thresholds() {
+        return new double[] { obstacleBelow, miningSpotBelow, sampleBelow };
+    }
+
+    int baseBound() {
+        return baseBound;
+    }
+
+    public static int chunkOf(int coordinate) {
+        return Math.floorDiv(coordinate, CHUNK_SIDE);
+    }
+
+    /** Key of the chunk of a cell: chunk x in the high half, chunk y in the low one. */
+    public static long chunkKey(int x, int y) {
+        return (long) chunkOf(x) << 32 | (chunkOf(y) & 0xffffffffL);
+    }
+
+    /** Coordinates of the cell at the given index (see {@link #indexInChunk}) of the chunk with the given key. */
+    public static Coordinates cellOf(long chunkKey, int index) {
+        return new Coordinates((int) (chunkKey >> 32) * CHUNK_SIDE + index / CHUNK_SIDE,
+                (int) chunkKey * CHUNK_SIDE + index % CHUNK_SIDE);
+    }
+
+    /** Index of a cell in the array of its chunk, cells are laid out column by column. */
+    public static int indexInChunk(int x, int y) {
+        return Math.floorMod(x, CHUNK_SIDE) * CHUNK_SIDE + Math.floorMod(y, CHUNK_SIDE);
+    }
+
+    /** Terrain codes (see {@link Terrain#codeOf}) of the cells of a chunk, laid out as {@link #indexInChunk}. */
+    public byte[] chunk(int chunkX, int chunkY) {
+        final var cells = new byte[CHUNK_SIDE * CHUNK_SIDE];
+        final var random = new SplittableRandom(streamSeed(chunkX, chunkY));
+        final var firstX = chunkX * CHUNK_SIDE;
+        final var firstY = chunkY * CHUNK_SIDE;
+        for (int i = 0; i < cells.length; i++) {
+            final var draw = random.nextDouble();
+            final var x = firstX + i / CHUNK_SIDE;
+            final var y = firstY + i % CHUNK_SIDE;
+            if (Math.abs(x) <= baseBound && Math.abs(y) <= baseBound) {
+                cells[i] = BASE;
+            } else if (draw < obstacleBelow) {
+                cells[i] = OBSTACLE;
+            } else if (draw < miningSpotBelow) {
+                cells[i] = MINING_SPOT;
+            } else if (draw < sampleBelow) {
+                cells[i] = SAMPLE;
+            }
+        }
+        return cells;
+    }
+
+    /**
+     * Writes the terrain of every cell of the square (centered in 0, 0) which is not empty,
+     * chunks are generated in parallel on the common fork-join pool.
+     */
+    public void generateAll(TerrainStore store, int bound) {
+        final var firstChunk = chunkOf(-bound);
+        final var chunksPerSide = chunkOf(bound) - firstChunk + 1;
+        IntStream.range(0, chunksPerSide * chunksPerSide).parallel().forEach(i -> {
+            final var chunkX = firstChunk + i / chunksPerSide;
+            final var chunkY = firstChunk + i % chunksPerSide;
+            final var cells = chunk(chunkX, chunkY);
+            for (int j = 0; j < cells.length; j++) {
+                final var x = chunkX * CHUNK_SIDE + j / CHUNK_SIDE;
+                final var y = chunkY * CHUNK_SIDE + j % CHUNK_SIDE;
+                if (cells[j] != 0 && Math.abs(x) <= bound && Math.abs(y) <= bound) {
+                    store.put(new Coordinates(x, y), Terrain.ofCode(cells[j]));
+                }
+            }
+        });
+    }
+
+    // Chunks next to each other (and seeds next to each other) must get unrelated streams
+    private long streamSeed(int chunkX, int chunkY) {
+        return mix(mix(seed) + ((long) chunkX << 32 | (chunkY & 0xffffffffL)));
+    }
+
+    // MurmurHash3 finalizer
+    private static long mix(long key) {
+        key = (key ^ (key >>> 33)) * 0xff51afd7ed558ccdL;
+        key = (key ^ (key >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return key ^ (key >>> 33);
+    }
+}
@@ -0,0 +1,22 @@
+package src.model;
+
+/**
+ * Storage backend for the terrain of Mars.
+ * Cells that were never written are expected to be {@link Terrain.Empty}.
+ * Writes are serialized by Mars, but reads may run concurrently with a write:
+ * they are allowed to see a stale value (Mars validates them) but must not fail.
+ * While Mars is generated different cells are written concurrently, before any read.
+ */
+public interface TerrainStore {
+    public Terrain get(Coordinates coordinates);
+
+    public void put(Coordinates coordinates, Terrain terrain);
+
+    /**
+     * Fills the empty store with the terrain of the square of the given bound, before any other access.
+     * Stores generating terrain on demand may just keep the generator.
+     */
+    public default void generate(TerrainGenerator generator, int bound) {
+        generator.generateAll(this, bound);
+    }
+}
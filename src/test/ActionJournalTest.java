@@ -0,0 +1,107 @@
+package src.test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import src.model.*;
+
+public class ActionJournalTest {
+
+    private static Mars newMars() {
+        return new Mars(41, 0.1, 0.05, 0.05, 5, 7, 3L);
+    }
+
+    private static ScientistRover scientistNamed(String name) {
+        return new ScientistRover(name, 100, 100, 2, 5, 1, 10, 4, 5);
+    }
+
+    // Many rovers acting at the same time, on neighbouring cells, from different threads
+    private static void simulate(Mars mars, int threads, int steps) throws InterruptedException {
+        final var workers = new ArrayList<Thread>();
+        for (int t = 0; t < threads; t++) {
+            final var seed = t;
+            final List<ScientistRover> rovers = List.of(scientistNamed("r" + t + "aS"), scientistNamed("r" + t + "bS"));
+            rovers.forEach(mars::spawn);
+            workers.add(new Thread(() -> {
+                final var random = new Random(seed);
+                for (int i = 0; i < steps; i++) {
+                    final var rover = rovers.get(random.nextInt(rovers.size()));
+                    final var near = mars.coordinatesOf(rover).apply(Direction.random());
+                    final Action action = switch (random.nextInt(6)) {
+                        case 0, 1 -> new Action.Explore(rover);
+                        case 2 -> new Action.Move(rover, Direction.random());
+                        case 3 -> new Action.MineSample(rover, near);
+                        case 4 -> new Action.CollectSample(rover, near);
+                        default -> random.nextBoolean() ? new Action.Recharge(rover) : new Action.DepositSamples(rover);
+                    };
+                    mars.performAction(action);
+                    final var seen = new CellBatch.Builder();
+                    mars.forEachInCameraRangeOf(rover, c -> seen.add(c, mars.terrainAt(c), random.nextInt(1000)));
+                    mars.updateMarsViewOf(rover, seen.build());
+                    mars.mergeIntoMarsViewOf(mars.base(), rover.marsView().changesToSend("base"));
+                }
+            }));
+        }
+        workers.forEach(Thread::start);
+        for (final var worker : workers) {
+            worker.join();
+        }
+    }
+
+    @Test
+    void testReplayGivesTheSameMars() throws IOException, InterruptedException {
+        final var file = Files.createTempFile("mars", ".journal");
+        try {
+            final var mars = newMars();
+            final var journal = ActionJournal.start(mars, file);
+            simulate(mars, 4, 2000);
+            journal.close();
+
+            final var replayed = newMars();
+            final JournalReplay.Result result;
+            try (final var replay = JournalReplay.open(file)) {
+                assertEquals(mars.seed(), replay.seed());
+                result = replay.replayOn(replayed);
+            }
+
+            assertEquals(0, result.divergences());
+            assertTrue(result.actions() - result.skippedActions() > 0);
+            assertTrue(mars.allCoordinates().stream().allMatch(c -> mars.terrainAt(c).equals(replayed.terrainAt(c))));
+            for (final var rover : mars.rovers()) {
+                final var twin = (ScientistRover) replayed.rover(rover.name()).orElseThrow();
+                assertEquals(mars.coordinatesOf(rover), replayed.coordinatesOf(twin));
+                assertEquals(rover.battery(), twin.battery());
+                assertEquals(((ScientistRover) rover).carriedSamples(), twin.carriedSamples());
+                assertEquals(rover.knownTerrain(), twin.knownTerrain());
+            }
+            assertEquals(mars.depositedSamples(), replayed.depositedSamples());
+            assertEquals(mars.base().knownCount(), replayed.base().knownCount());
+            assertTrue(mars.allCoordinates().stream().allMatch(c -> mars.base().marsView().timestampAt(c)
+                    == replayed.base().marsView().timestampAt(c)));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    void testNothingIsJournaledAfterClosing() throws IOException {
+        final var file = Files.createTempFile("mars", ".journal");
+        try {
+            final var mars = newMars();
+            ActionJournal.start(mars, file).close();
+            final var size = Files.size(file);
+            mars.spawn(scientistNamed("R1S"));
+
+            assertEquals(size, Files.size(file));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package src.test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import src.env.ActionScheduler;
+
+public class ActionSchedulerTest {
+
+    @Test
+    void testActionsOfDifferentAgentsOverlap() throws InterruptedException {
+        final var scheduler = new ActionScheduler(Double.POSITIVE_INFINITY);
+        final var done = new CountDownLatch(4);
+        for (int i = 0; i < 4; i++) {
+            scheduler.register("r" + i);
+        }
+        scheduler.start();
+        for (int i = 0; i < 4; i++) {
+            scheduler.schedule("r" + i, 1000, done::countDown);
+        }
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(1000, scheduler.now());
+        scheduler.stop();
+    }
+
+    @Test
+    void testSlowAgentsAreWaitedFor() throws InterruptedException {
+        final var scheduler = new ActionScheduler(Double.POSITIVE_INFINITY);
+        final List<String> completed = Collections.synchronizedList(new ArrayList<>());
+        final var done = new CountDownLatch(3);
+        scheduler.register("fast");
+        scheduler.register("slow");
+        scheduler.start();
+        // The fast agent acts again as soon as its first action completes
+        scheduler.schedule("fast", 1000, () -> {
+            completed.add("fast@1000");
+            done.countDown();
+            scheduler.schedule("fast", 1000, () -> {
+                completed.add("fast@2000");
+                done.countDown();
+            });
+        });
+        Thread.sleep(50);
+        scheduler.schedule("slow", 1500, () -> {
+            completed.add("slow@1500");
+            done.countDown();
+        });
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of("fast@1000", "slow@1500", "fast@2000"), completed);
+        assertEquals(2000, scheduler.now());
+        scheduler.stop();
+    }
+
+    @Test
+    void testPendingCountsActionsNotCompletedYet() throws InterruptedException {
+        final var scheduler = new ActionScheduler(Double.POSITIVE_INFINITY);
+        final var done = new CountDownLatch(2);
+        scheduler.register("r0");
+        scheduler.register("r1");
+        scheduler.schedule("r0", 1000, done::countDown);
+        scheduler.schedule("r1", 2000, done::countDown);
+        assertEquals(2, scheduler.pending());
+
+        scheduler.start();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(0, scheduler.pending());
+        scheduler.stop();
+    }
+
+    @Test
+    void testIdleAgentsAreNotWaitedFor() throws InterruptedException {
+        final var scheduler = new ActionScheduler(Double.POSITIVE_INFINITY);
+        final var done = new CountDownLatch(1);
+        scheduler.register("active");
+        scheduler.register("idle");
+        scheduler.start();
+        scheduler.schedule("active", 1000, done::countDown);
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(1000, scheduler.now());
+        scheduler.stop();
+    }
+}
@@ -0,0 +1,93 @@
+package src.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import src.model.*;
+
+public class CheckpointTest {
+
+    private static byte[] checkpointOf(Mars mars) throws IOException {
+        final var bytes = new ByteArrayOutputStream();
+        Checkpoint.write(mars, Channels.newChannel(bytes));
+        return bytes.toByteArray();
+    }
+
+    private static Mars restore(byte[] checkpoint) throws IOException {
+        return Checkpoint.read(Channels.newChannel(new ByteArrayInputStream(checkpoint)));
+    }
+
+    @Test
+    void testRestoresTerrainRoversAndViews() throws IOException {
+        final var mars = new Mars(51, 0.1, 0.05, 0.05, 3, 5, 7L);
+        final var rover = new SimpleRover("R1", 100, 100, 3, 5, 1, 10);
+        final var scientist = new ScientistRover("R2S", 100, 100, 3, 5, 1, 10, 4, 10);
+        mars.spawn(rover);
+        mars.spawn(scientist);
+        mars.availableDirections(rover).stream().findFirst()
+                .ifPresent(d -> mars.performAction(new Action.Move(rover, d)));
+        scientist.collectSample();
+        scientist.mineSample();
+        mars.updateMarsViewOf(rover, new CellBatch.Builder()
+                .add(new Coordinates(20, -20), new Terrain.Obstacle(), 1234)
+                .add(new Coordinates(0, 0), new Terrain.Base(), 99)
+                .build());
+        mars.updateMarsViewOf(mars.base(), new CellBatch.Builder()
+                .add(new Coordinates(-3, 4), new Terrain.Sample(), 42)
+                .build());
+
+        final var restored = restore(checkpointOf(mars));
+
+        assertEquals(mars.positiveBound(), restored.positiveBound());
+        assertEquals(mars.base().side(), restored.base().side());
+        assertTrue(mars.allCoordinates().stream().allMatch(c -> mars.terrainAt(c).equals(restored.terrainAt(c))));
+        final var restoredRover = (SimpleRover) restored.rover("R1").orElseThrow();
+        final var restoredScientist = (ScientistRover) restored.rover("R2S").orElseThrow();
+        assertEquals(mars.coordinatesOf(rover), restored.coordinatesOf(restoredRover));
+        assertEquals(mars.coordinatesOf(scientist), restored.coordinatesOf(restoredScientist));
+        assertEquals(rover.battery(), restoredRover.battery());
+        assertEquals(scientist.battery(), restoredScientist.battery());
+        assertEquals(1, restoredScientist.carriedSamples());
+        assertEquals(rover.movementEnergyCost(), restoredRover.movementEnergyCost());
+        assertEquals(2, restoredRover.knownCount());
+        assertEquals(1234, restoredRover.marsView().timestampAt(new Coordinates(20, -20)));
+        assertEquals(new TerrainView.Known(new Terrain.Obstacle()),
+                restoredRover.marsView().terrainAt(new Coordinates(20, -20)));
+        assertEquals(42, restored.base().marsView().timestampAt(new Coordinates(-3, 4)));
+    }
+
+    @Test
+    void testRestoresModifiedChunks() throws IOException {
+        final var store = new ChunkedTerrainStore(16);
+        final var mars = new Mars(100_001, 0.1, 0.05, 0.05, 3, 5, 42L, store);
+        final var modified = new Coordinates(12_345, -6_789);
+        final var generated = new Coordinates(-40_000, 40_000);
+        store.put(modified, new Terrain.Sample());
+        final var rover = new SimpleRover("R1", 100, 100, 3, 5, 1, 10);
+        mars.spawn(rover);
+        final var seen = new Coordinates(30, -30);
+        mars.updateMarsViewOf(rover, seen, mars.terrainAt(seen));
+
+        final var restored = restore(checkpointOf(mars));
+
+        assertEquals(new Terrain.Sample(), restored.terrainAt(modified));
+        assertEquals(mars.terrainAt(generated), restored.terrainAt(generated));
+        assertTrue(restored.rover("R1").orElseThrow().isKnown(seen));
+    }
+
+    @Test
+    void testTruncatedCheckpointIsRejected() throws IOException {
+        final var mars = new Mars(21, 0.1, 0.05, 0.05, 3, 5, 1L);
+        mars.spawn(new SimpleRover("R1", 100, 100, 3, 5, 1, 10));
+        final var checkpoint = checkpointOf(mars);
+
+        assertThrows(IOException.class, () -> restore(Arrays.copyOf(checkpoint, checkpoint.length - 3)));
+    }
+}
@@ -0,0 +1,149 @@
+package src.test;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalInt;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import src.model.*;
+
+public class DistanceFieldTest {
+
+    private static CellBatch cells(Terrain terrain, Coordinates... coordinates) {
+        final var builder = new CellBatch.Builder();
+        for (final var c : coordinates) {
+            builder.add(c, terrain, 0);
+        }
+        return builder.build();
+    }
+
+    // A row of empty cells from the base at (0, 0) to (length, 0)
+    private static DistanceField corridor(int length) {
+        final var field = new DistanceField();
+        field.cellsKnown(cells(new Terrain.Base(), new Coordinates(0, 0)));
+        for (int x = 1; x <= length; x++) {
+            field.cellsKnown(cells(new Terrain.Empty(), new Coordinates(x, 0)));
+        }
+        return field;
+    }
+
+    @Test
+    void testDistancesAlongAKnownWay() {
+        final var field = corridor(5);
+
+        assertEquals(OptionalInt.of(0), field.distanceAt(new Coordinates(0, 0)));
+        assertEquals(OptionalInt.of(5), field.distanceAt(new Coordinates(5, 0)));
+        assertEquals(OptionalInt.empty(), field.distanceAt(new Coordinates(6, 0)));
+        assertEquals(OptionalInt.empty(), field.distanceAt(new Coordinates(3, 1)));
+    }
+
+    @Test
+    void testObstaclesAreNotWalkedThrough() {
+        final var field = new DistanceField();
+        field.cellsKnown(cells(new Terrain.Base(), new Coordinates(0, 0)));
+        field.cellsKnown(cells(new Terrain.Obstacle(), new Coordinates(1, 0)));
+        field.cellsKnown(cells(new Terrain.Empty(), new Coordinates(2, 0)));
+
+        assertEquals(OptionalInt.empty(), field.distanceAt(new Coordinates(1, 0)));
+        assertEquals(OptionalInt.empty(), field.distanceAt(new Coordinates(2, 0)));
+
+        // Around the obstacle
+        field.cellsKnown(cells(new Terrain.Empty(), new Coordinates(0, 1), new Coordinates(1, 1),
+                new Coordinates(2, 1)));
+        assertEquals(OptionalInt.of(4), field.distanceAt(new Coordinates(2, 0)));
+    }
+
+    @Test
+    void testANewCellShortensTheWay() {
+        // The base at (0, 0), a U shaped way to (0, 2) going around (0, 1)
+        final var field = new DistanceField();
+        field.cellsKnown(cells(new Terrain.Base(), new Coordinates(0, 0)));
+        field.cellsKnown(cells(new Terrain.Empty(), new Coordinates(1, 0), new Coordinates(1, 1),
+                new Coordinates(1, 2), new Coordinates(0, 2), new Coordinates(0, 3)));
+        assertEquals(OptionalInt.of(5), field.distanceAt(new Coordinates(0, 3)));
+
+        field.cellsKnown(cells(new Terrain.Sample(), new Coordinates(0, 1)));
+
+        assertEquals(OptionalInt.of(1), field.distanceAt(new Coordinates(0, 1)));
+        assertEquals(OptionalInt.of(2), field.distanceAt(new Coordinates(0, 2)));
+        assertEquals(OptionalInt.of(3), field.distanceAt(new Coordinates(0, 3)));
+        assertEquals(OptionalInt.of(2), field.distanceAt(new Coordinates(1, 1)));
+    }
+
+    @Test
+    void testStepsTowardsBase() {
+        final var field = corridor(3);
+        field.cellsKnown(cells(new Terrain.Empty(), new Coordinates(0, 1), new Coordinates(1, 1)));
+
+        assertEquals(List.of(new Direction.Left()), field.stepsTowardsBase(new Coordinates(3, 0)));
+        assertEquals(2, field.stepsTowardsBase(new Coordinates(1, 1)).size());
+        assertTrue(field.stepsTowardsBase(new Coordinates(0, 0)).isEmpty());
+        assertTrue(field.stepsTowardsBase(new Coordinates(10, 10)).isEmpty());
+    }
+
+    @Test
+    void testWayToBase() {
+        final var field = corridor(3);
+        field.cellsKnown(cells(new Terrain.MiningSpot(), new Coordinates(3, 1)));
+
+        assertEquals(Optional.of(new DistanceField.Way(3, List.of(new Direction.Left()))),
+                field.wayToBase(new Coordinates(3, 0)));
+        // Through (3, 0)
+        assertEquals(Optional.of(new DistanceField.Way(4, List.of(new Direction.Down()))),
+                field.wayToBase(new Coordinates(3, 1)));
+        assertEquals(Optional.of(new DistanceField.Way(0, List.of())), field.wayToBase(new Coordinates(0, 0)));
+        assertEquals(Optional.empty(), field.wayToBase(new Coordinates(10, 10)));
+    }
+
+    @Test
+    void testMiningSpotsAreReachedFromTheirNearestNeighbour() {
+        final var field = corridor(3);
+        field.cellsKnown(cells(new Terrain.Empty(), new Coordinates(0, 1), new Coordinates(0, 2)));
+        field.cellsKnown(cells(new Terrain.MiningSpot(), new Coordinates(1, 2)));
+
+        assertEquals(OptionalInt.empty(), field.distanceAt(new Coordinates(1, 2)));
+        // Through (0, 2), its only neighbour known to be walkable
+        assertEquals(OptionalInt.of(3), field.distanceToReach(new Coordinates(1, 2)));
+        assertEquals(List.of(new Direction.Left()), field.stepsTowardsBase(new Coordinates(1, 2)));
+        assertEquals(OptionalInt.of(1), field.distanceToReach(new Coordinates(1, 0)));
+        assertEquals(OptionalInt.empty(), field.distanceToReach(new Coordinates(5, 5)));
+    }
+
+    @Test
+    void testSpansManyPages() {
+        final var field = new DistanceField();
+        field.cellsKnown(cells(new Terrain.Base(), new Coordinates(0, 0)));
+        final var builder = new CellBatch.Builder();
+        for (int x = 1; x <= 600; x++) {
+            builder.add(new Coordinates(x, 0), new Terrain.Empty(), 0);
+        }
+        field.cellsKnown(builder.build());
+
+        assertEquals(OptionalInt.of(600), field.distanceAt(new Coordinates(600, 0)));
+        assertEquals(OptionalInt.of(0), field.distanceAt(new Coordinates(0, 0)));
+
+        // Far from everything else, as on a huge map
+        field.cellsKnown(cells(new Terrain.Empty(), new Coordinates(-499_999, 499_999)));
+        assertEquals(OptionalInt.empty(), field.distanceAt(new Coordinates(-499_999, 499_999)));
+    }
+
+    @Test
+    void testMarsKeepsTheFieldOfKnownCells() {
+        final var mars = new Mars(41, 0, 0, 0, 5, 7, 3L);
+        final var rover = new SimpleRover("R1", 100, 100, 2, 5, 1, 10);
+        mars.spawn(rover);
+        final var base = mars.baseCenterCoordinates();
+        final var far = new Coordinates(base.x() + 8, base.y());
+        assertEquals(OptionalInt.empty(), mars.distanceToBase().distanceAt(far));
+
+        final var seen = new CellBatch.Builder();
+        mars.allCoordinates().forEach(c -> seen.add(c, mars.terrainAt(c), 0));
+        mars.updateMarsViewOf(rover, seen.build());
+
+        // No obstacles, the base is 5x5 around its center
+        assertEquals(OptionalInt.of(6), mars.distanceToBase().distanceAt(far));
+    }
+}
@@ -35,6 +35,15 @@ public class MarsTest {
                 Config.SCIENTIST_MINING_SAMPLE_ENERGY_COST);
     }
 
+    // Nothing but the given obstacles and a 1x1 base at (0, 0), where every rover spawns
+    private static Mars marsWithObstaclesAt(Coordinates... obstacles) {
+        final var terrain = new SparseTerrainStore();
+        for (final var c : obstacles) {
+            terrain.put(c, new Terrain.Obstacle());
+        }
+        return new Mars(10, 0, 0, 0, 1, 5, 12345L, terrain);
+    }
+
     @BeforeEach
     void setUp() {
         // squareSide, obstacles, samples, mining, baseSide, baseAntenna
@@ -80,6 +89,47 @@ public class MarsTest {
         }
     }
 
+    @Test
+    void testBatchedViewUpdateNotifiesOnce() {
+        TestListener listener = new TestListener();
+        Rover rover = simpleRoverNamed("R1");
+        mars.spawn(rover);
+        mars.addListener(listener);
+
+        mars.updateMarsViewOf(rover, new CellBatch.Builder()
+                .add(new Coordinates(0, 0), new Terrain.Base(), 1)
+                .add(new Coordinates(2, 0), new Terrain.Empty(), 1)
+                .add(new Coordinates(3, 0), new Terrain.Obstacle(), 1)
+                .build());
+        mars.flushNotifications();
+
+        assertEquals(1, listener.callCount);
+        assertEquals(3, listener.lastChange.cells().size());
+        assertEquals(3, rover.knownCount());
+    }
+
+    @Test
+    void testKnownAreaSizeCountsCellsKnownByRovers() {
+        Rover r1 = simpleRoverNamed("R1");
+        Rover r2 = simpleRoverNamed("R2");
+        mars.spawn(r1);
+        mars.spawn(r2);
+        mars.updateMarsViewOf(r1, new CellBatch.Builder()
+                .add(new Coordinates(0, 0), new Terrain.Base(), 1)
+                .add(new Coordinates(2, 0), new Terrain.Empty(), 1)
+                .build());
+        mars.updateMarsViewOf(r2, new CellBatch.Builder()
+                .add(new Coordinates(2, 0), new Terrain.Empty(), 2)
+                .add(new Coordinates(3, 0), new Terrain.Obstacle(), 2)
+                .build());
+        // The base does not explore
+        mars.updateMarsViewOf(mars.base(), new CellBatch.Builder()
+                .add(new Coordinates(4, 0), new Terrain.Empty(), 3)
+                .build());
+
+        assertEquals(mars.knownArea().size(), mars.knownAreaSize());
+    }
+
     @Test
     void testListenerNotification() {
         TestListener listener = new TestListener();
@@ -87,14 +137,34 @@ public class MarsTest {
 
         Rover rover = simpleRoverNamed("R1");
         mars.spawn(rover);
+        mars.flushNotifications();
 
         assertTrue(listener.callCount > 0, "Listener should have been notified of spawn");
 
         int countBeforeAction = listener.callCount;
         mars.performAction(new Action.Recharge(rover));
+        mars.flushNotifications();
         assertEquals(countBeforeAction + 1, listener.callCount, "Action should notify listeners");
     }
 
+    @Test
+    void testChangeCarriesMovedRoverAndCells() {
+        TestListener listener = new TestListener();
+        Rover rover = simpleRoverNamed("R1");
+        mars.spawn(rover);
+        mars.addListener(listener);
+        final var from = mars.coordinatesOf(rover);
+
+        final var moved = mars.availableDirections(rover).stream()
+                .anyMatch(d -> mars.performAction(new Action.Move(rover, d)));
+        mars.flushNotifications();
+
+        assertTrue(moved);
+        assertEquals(java.util.Set.of(rover), listener.lastChange.rovers());
+        assertTrue(listener.lastChange.cells().contains(from));
+        assertTrue(listener.lastChange.cells().contains(mars.coordinatesOf(rover)));
+    }
+
     @Test
     void testTerrainDensity() {
         Mars largeMars = new Mars(100, 0.1, 0.0, 0.0, 1, 1, 42L);
@@ -105,12 +175,62 @@ public class MarsTest {
         assertTrue(obstacles > 900 && obstacles < 1100);
     }
 
+    @Test
+    void testGenerationDoesNotDependOnThreads() throws Exception {
+        final var single = new java.util.concurrent.ForkJoinPool(1);
+        final var many = new java.util.concurrent.ForkJoinPool(8);
+        try {
+            final var m1 = single.submit(() -> new Mars(301, 0.1, 0.05, 0.05, 4, 7, 42L)).get();
+            final var m2 = many.submit(() -> new Mars(301, 0.1, 0.05, 0.05, 4, 7, 42L)).get();
+            assertTrue(m1.allCoordinates().stream().allMatch(c -> m1.terrainAt(c).equals(m2.terrainAt(c))));
+            assertTrue(m1.terrainAt(new Coordinates(0, 0)) instanceof Terrain.Base);
+        } finally {
+            single.shutdown();
+            many.shutdown();
+        }
+    }
+
+    @Test
+    void testChunkedTerrainIsTheSameMap() {
+        final var dense = new Mars(301, 0.1, 0.05, 0.05, 4, 7, 42L);
+        final var chunked = new Mars(301, 0.1, 0.05, 0.05, 4, 7, 42L, new ChunkedTerrainStore(4));
+        assertTrue(dense.allCoordinates().stream().allMatch(c -> dense.terrainAt(c).equals(chunked.terrainAt(c))));
+    }
+
+    @Test
+    void testChunkedTerrainKeepsModifiedChunks() {
+        final var store = new ChunkedTerrainStore(2);
+        final var huge = new Mars(1_000_001, 0.1, 0.05, 0.05, 3, 5, 42L, store);
+        final var modified = new Coordinates(123_456, -98_765);
+        store.put(modified, new Terrain.Sample());
+
+        for (int i = 0; i < 20; i++) {
+            huge.terrainAt(new Coordinates(i * 1000, -i * 1000));
+        }
+
+        assertTrue(store.loadedChunks() < 10);
+        assertEquals(new Terrain.Sample(), huge.terrainAt(modified));
+    }
+
+    @Test
+    void testAllCoordinatesOfHugeMaps() {
+        final var huge = new Mars(1_000_001, 0.1, 0.05, 0.05, 3, 5, 42L, new ChunkedTerrainStore(2));
+
+        assertEquals(Integer.MAX_VALUE, huge.allCoordinates().size());
+        assertEquals(1_000_001L * 1_000_001, huge.area());
+        assertTrue(huge.allCoordinates().contains(new Coordinates(500_000, -500_000)));
+        assertEquals(3, huge.allCoordinates().stream().limit(3).count());
+    }
+
     @Test
     void testReachableRovers() {
+        mars = marsWithObstaclesAt();
         Rover r1 = simpleRoverNamed("R1");
         Rover r2 = simpleRoverNamed("R2");
 
+        // R1 makes room in the base for R2
         mars.spawn(r1);
+        assertTrue(mars.performAction(new Action.Move(r1, new Direction.Right())));
         mars.spawn(r2);
 
         assertTrue(mars.reachableRovers(r1).contains(r2));
@@ -125,14 +245,34 @@ public class MarsTest {
         assertFalse(mars.reachableRovers(r1).contains(r2));
     }
 
+    @Test
+    void testRoverLookupFollowsMoves() {
+        Rover r1 = simpleRoverNamed("R1");
+        mars.spawn(r1);
+        Coordinates start = mars.coordinatesOf(r1);
+        Direction direction = mars.availableDirections(r1).iterator().next();
+
+        assertTrue(mars.performAction(new Action.Move(r1, direction)));
+        Coordinates end = mars.coordinatesOf(r1);
+
+        assertEquals(start.apply(direction), end);
+        assertEquals(r1, mars.roverAtCoordinates(end).orElseThrow());
+        assertTrue(mars.roverAtCoordinates(start).isEmpty());
+        assertEquals(r1, mars.rover("R1").orElseThrow());
+    }
+
     @Test
     void testCannotMoveIntoObstacles() {
+        mars = marsWithObstaclesAt(new Coordinates(3, 0));
         Rover r1 = simpleRoverNamed("R1");
         mars.spawn(r1);
+        assertEquals(new Coordinates(0, 0), mars.coordinatesOf(r1));
         assertTrue(mars.performAction(new Action.Move(r1, new Direction.Right())));
         assertTrue(mars.performAction(new Action.Move(r1, new Direction.Right())));
         assertTrue(mars
                 .terrainAt(mars.roverCoordinates().get(r1).apply(new Direction.Right())) instanceof Terrain.Obstacle);
+        assertFalse(mars.performAction(new Action.Move(r1, new Direction.Right())));
+        assertEquals(new Coordinates(2, 0), mars.coordinatesOf(r1));
     }
 
     @Test
@@ -0,0 +1,171 @@
+package src.test;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import src.model.*;
+
+class MarsViewTest {
+    private MarsView view;
+
+    @BeforeEach
+    void setUp() {
+        view = new MarsView();
+    }
+
+    @Test
+    void testKnownCountIgnoresRepeatedUpdates() {
+        view.updateView(new Coordinates(0, 0), new TerrainView.Known(new Terrain.Empty()));
+        view.updateView(new Coordinates(0, 0), new TerrainView.Known(new Terrain.Sample()));
+        view.updateView(new Coordinates(1, -2), new TerrainView.Known(new Terrain.Obstacle()));
+
+        assertEquals(2, view.knownCount());
+        assertTrue(view.isKnown(new Coordinates(1, -2)));
+        assertFalse(view.isKnown(new Coordinates(1, 1)));
+        assertEquals(new TerrainView.Known(new Terrain.Sample()), view.terrainAt(new Coordinates(0, 0)));
+    }
+
+    @Test
+    void testKnownTerrainIsALiveView() {
+        final var known = view.knownTerrain();
+        assertTrue(known.isEmpty());
+
+        view.updateView(new Coordinates(2, 2), new TerrainView.Known(new Terrain.Base()));
+
+        assertEquals(1, known.size());
+        assertEquals(new TerrainView.Known(new Terrain.Base()), known.get(new Coordinates(2, 2)));
+    }
+
+    @Test
+    void testGrowsWhenCellsOutsideAreKnown() {
+        view.updateView(new Coordinates(-1, 1), new TerrainView.Known(new Terrain.MiningSpot()));
+        view.updateView(new Coordinates(7, -9), new TerrainView.Known(new Terrain.Obstacle()));
+
+        assertEquals(2, view.knownCount());
+        assertEquals(new TerrainView.Known(new Terrain.MiningSpot()), view.terrainAt(new Coordinates(-1, 1)));
+        assertEquals(new TerrainView.Known(new Terrain.Obstacle()), view.terrainAt(new Coordinates(7, -9)));
+        assertEquals(2, view.knownTerrain().entrySet().stream().count());
+    }
+
+    @Test
+    void testKnowsCellsFarApartOnHugeMaps() {
+        view.updateView(new Coordinates(0, 0), new TerrainView.Known(new Terrain.Base()));
+        view.updateView(new Coordinates(400_000, -400_000), new TerrainView.Known(new Terrain.Sample()));
+        view.updateView(new Coordinates(-1, 499_999), new TerrainView.Known(new Terrain.Obstacle()));
+
+        assertEquals(3, view.knownCount());
+        assertEquals(new TerrainView.Known(new Terrain.Sample()), view.terrainAt(new Coordinates(400_000, -400_000)));
+        assertFalse(view.isKnown(new Coordinates(400_001, -400_000)));
+        assertEquals(3, view.knownTerrain().entrySet().stream().count());
+    }
+
+    @Test
+    void testFrontierSurroundsKnownCells() {
+        view.updateView(new Coordinates(0, 0), new TerrainView.Known(new Terrain.Empty()));
+        assertEquals(new Coordinates(0, 0).neighbours(), view.frontier());
+
+        view.updateView(new Coordinates(1, 0), new TerrainView.Known(new Terrain.Empty()));
+        assertFalse(view.frontier().contains(new Coordinates(1, 0)));
+        assertTrue(view.frontier().contains(new Coordinates(2, 0)));
+        assertEquals(10, view.frontier().size());
+    }
+
+    @Test
+    void testChangesToSendArePerPeer() {
+        view.updateView(new Coordinates(0, 0), new TerrainView.Known(new Terrain.Empty()));
+        view.updateView(new Coordinates(1, 1), new TerrainView.Known(new Terrain.Sample()));
+        assertEquals(2, view.changesToSend("r1").size());
+        assertTrue(view.changesToSend("r1").isEmpty());
+
+        view.updateView(new Coordinates(1, 1), new TerrainView.Known(new Terrain.Empty()));
+        view.updateView(new Coordinates(5, 5), new TerrainView.Known(new Terrain.Obstacle()));
+        final var changes = view.changesToSend("r1");
+        assertEquals(2, changes.size());
+        assertEquals(new Coordinates(1, 1), changes.coordinates(0));
+        assertEquals(new Coordinates(5, 5), changes.coordinates(1));
+        assertEquals(new Terrain.Obstacle(), changes.terrain(1));
+        assertEquals(3, view.changesToSend("r2").size());
+    }
+
+    @Test
+    void testMergedCellsAreNotSentBackToTheirSender() {
+        view.updateView(new Coordinates(0, 0), new TerrainView.Known(new Terrain.Empty()), 100);
+        view.merge(new CellBatch.Builder()
+                .add(new Coordinates(1, 1), new Terrain.Sample(), 100)
+                .add(new Coordinates(0, 0), new Terrain.Empty(), 200)
+                .build(), "r1");
+
+        assertEquals(0, view.changesToSend("r1").size());
+        assertEquals(2, view.changesToSend("r2").size());
+
+        view.updateView(new Coordinates(1, 1), new TerrainView.Known(new Terrain.Empty()), 300);
+        final var changes = view.changesToSend("r1");
+        assertEquals(1, changes.size());
+        assertEquals(new Coordinates(1, 1), changes.coordinates(0));
+    }
+
+    @Test
+    void testChangesToSendAfterManyUpdates() {
+        view.updateView(new Coordinates(0, 0), new TerrainView.Known(new Terrain.Empty()));
+        view.changesToSend("r1");
+        view.changesToSend("r2");
+        // Many more updates than the change log keeps, over few cells
+        for (int i = 0; i < 100_000; i++) {
+            view.updateView(new Coordinates(i % 3, 0), new TerrainView.Known(new Terrain.Empty()), i);
+        }
+        assertEquals(3, view.changesToSend("r1").size());
+
+        // Over more cells than the change log keeps: r1 keeps up, r2 gets everything it missed anyway
+        for (int i = 0; i < 10_000; i++) {
+            view.updateView(new Coordinates(i % 100, 1 + i / 100), new TerrainView.Known(new Terrain.Empty()), i);
+            if (i % 1000 == 999) {
+                assertEquals(1000, view.changesToSend("r1").size());
+            }
+        }
+        assertEquals(10_003, view.changesToSend("r2").size());
+        assertTrue(view.changesToSend("r1").isEmpty());
+    }
+
+    @Test
+    void testKeepsTimestampsFarApart() {
+        view.updateView(new Coordinates(0, 0), new TerrainView.Known(new Terrain.Empty()), 1);
+        view.updateView(new Coordinates(1, 0), new TerrainView.Known(new Terrain.Empty()), Long.MAX_VALUE / 2);
+        view.updateView(new Coordinates(9, 9), new TerrainView.Known(new Terrain.Empty()), -5);
+
+        assertEquals(1, view.timestampAt(new Coordinates(0, 0)));
+        assertEquals(Long.MAX_VALUE / 2, view.timestampAt(new Coordinates(1, 0)));
+        assertEquals(-5, view.timestampAt(new Coordinates(9, 9)));
+    }
+
+    @Test
+    void testMergeKeepsNewestData() {
+        view.updateView(new Coordinates(0, 0), new TerrainView.Known(new Terrain.Sample()), 100);
+        view.updateView(new Coordinates(1, 0), new TerrainView.Known(new Terrain.Sample()), 100);
+
+        final var merged = view.merge(new CellBatch.Builder()
+                .add(new Coordinates(0, 0), new Terrain.Empty(), 50)
+                .add(new Coordinates(1, 0), new Terrain.Empty(), 150)
+                .add(new Coordinates(9, 9), new Terrain.Obstacle(), 10)
+                .build());
+
+        assertEquals(2, merged.size());
+        assertEquals(new TerrainView.Known(new Terrain.Sample()), view.terrainAt(new Coordinates(0, 0)));
+        assertEquals(new TerrainView.Known(new Terrain.Empty()), view.terrainAt(new Coordinates(1, 0)));
+        assertEquals(new TerrainView.Known(new Terrain.Obstacle()), view.terrainAt(new Coordinates(9, 9)));
+        assertEquals(150, view.changesToSend("r1").timestamp(1));
+    }
+
+    @Test
+    void testCellsWithTerrains() {
+        view.updateView(new Coordinates(0, 0), new TerrainView.Known(new Terrain.Sample()), 100);
+        view.updateView(new Coordinates(1, 0), new TerrainView.Known(new Terrain.Empty()), 100);
+        view.updateView(new Coordinates(2, 2), new TerrainView.Known(new Terrain.MiningSpot()), 200);
+
+        final var cells = view.cellsWith(java.util.Set.of(new Terrain.Sample(), new Terrain.MiningSpot()));
+        assertEquals(2, cells.size());
+        assertEquals(new Coordinates(0, 0), cells.coordinates(0));
+        assertEquals(new Terrain.MiningSpot(), cells.terrain(1));
+        assertEquals(200, view.timestampAt(new Coordinates(2, 2)));
+        assertEquals(0, view.timestampAt(new Coordinates(-2, 2)));
+    }
+}
@@ -0,0 +1,54 @@
+package src.test;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import src.utils.*;
+
+class MetricsTest {
+
+    @Test
+    void testEmptyHistogram() {
+        final var h = new LatencyHistogram();
+        assertEquals(0, h.count());
+        assertEquals(0, h.percentileNanos(99));
+        assertEquals(0.0, h.meanNanos());
+    }
+
+    @Test
+    void testPercentilesAreWithinBucketPrecision() {
+        final var h = new LatencyHistogram();
+        for (long i = 1; i <= 10_000; i++) {
+            h.record(i * 1_000);
+        }
+        assertEquals(10_000, h.count());
+        assertEquals(10_000_000, h.maxNanos());
+        assertEquals(5_000_500, h.meanNanos(), 1);
+        assertEquals(5_000_000, h.percentileNanos(50), 5_000_000 * 0.04);
+        assertEquals(9_900_000, h.percentileNanos(99), 9_900_000 * 0.04);
+        assertEquals(10_000_000, h.percentileNanos(100));
+    }
+
+    @Test
+    void testSmallValuesAreExact() {
+        final var h = new LatencyHistogram();
+        h.record(3);
+        h.record(7);
+        h.record(-5);
+        assertEquals(0, h.percentileNanos(1));
+        assertEquals(3, h.percentileNanos(50));
+        assertEquals(7, h.percentileNanos(100));
+    }
+
+    @Test
+    void testRecordsUnderNameAndTags() {
+        final var before = Metrics.latency("MetricsTest.op").count();
+        Metrics.recordSince(System.nanoTime(), "MetricsTest.op", "move", "r1");
+        Metrics.add(2, "MetricsTest.count", "r1");
+
+        assertEquals(before + 1, Metrics.latency("MetricsTest.op").count());
+        assertEquals(1, Metrics.latency("MetricsTest.op", "move").count());
+        assertEquals(1, Metrics.latency("MetricsTest.op", "r1").count());
+        assertEquals(2, Metrics.counter("MetricsTest.count", "r1").sum());
+        assertTrue(Metrics.summary().contains("MetricsTest.count=2 (r1 100%)"));
+    }
+}
@@ -0,0 +1,46 @@
+package src.test;
+
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import src.model.Config;
+import src.model.Settings;
+
+public class SettingsTest {
+
+    @Test
+    void testDefaultsAreTheConfigParameters() throws IllegalAccessException {
+        final var byName = Settings.DEFAULTS.byName();
+        final var fields = Config.class.getFields();
+
+        assertEquals(Arrays.stream(fields).map(Field::getName).collect(Collectors.toSet()), byName.keySet());
+        for (final var field : fields) {
+            assertEquals(field.get(null), byName.get(field.getName()), field.getName());
+        }
+    }
+
+    @Test
+    void testOverridesByName() {
+        final var settings = Settings.DEFAULTS
+                .with("MARS_SIZE", "101")
+                .with("TIME_SCALE", "Infinity")
+                .with("DELTA_PERCEPTS", "true");
+
+        assertEquals(101, settings.marsSize());
+        assertEquals(Double.POSITIVE_INFINITY, settings.timeScale());
+        assertTrue(settings.deltaPercepts());
+        assertEquals(Config.ROVER_CAMERA_RANGE, settings.roverCameraRange());
+        // The defaults are left as they are
+        assertEquals(Config.MARS_SIZE, Settings.DEFAULTS.marsSize());
+    }
+
+    @Test
+    void testUnknownParameter() {
+        assertThrows(IllegalArgumentException.class, () -> Settings.DEFAULTS.with("MARS_COLOUR", "red"));
+    }
+}
@@ -4,9 +4,11 @@ import src.model.*;
 
 class TestListener implements Mars.Listener {
     public int callCount = 0;
+    public Mars.Change lastChange;
 
     @Override
-    public void marsUpdated() {
+    public void marsUpdated(Mars.Change change) {
         callCount++;
+        lastChange = change;
     }
 }
@@ -0,0 +1,91 @@
+package src.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of durations in ns, in the style of HdrHistogram: values are counted in buckets
+ * whose width grows with the value (each power of two is split in 32 buckets), so percentiles are
+ * within about 3% of the real value whatever its magnitude, with a fixed amount of memory.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder total = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /** Records a duration, negative ones count as 0. */
+    public void record(long nanos) {
+        final var value = Math.max(0, nanos);
+        counts.incrementAndGet(bucketOf(value));
+        count.increment();
+        total.add(value);
+        max.accumulateAndGet(value, Math::max);
+    }
+
+    public long count() {
+        return count.sum();
+    }
+
+    public long totalNanos() {
+        return total.sum();
+    }
+
+    public long maxNanos() {
+        return max.get();
+    }
+
+    public double meanNanos() {
+        final var n = count();
+        return n == 0 ? 0 : totalNanos() / (double) n;
+    }
+
+    /**
+     * The value below which the given percentage of the durations fall (the upper end of its bucket),
+     * 0 if nothing was recorded.
+     */
+    public long percentileNanos(double percentile) {
+        final var n = count();
+        if (n == 0) {
+            return 0;
+        }
+        final var target = Math.max(1, (long) Math.ceil(percentile / 100 * n));
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            seen += counts.get(bucket);
+            if (seen >= target) {
+                return Math.min(maxNanos(), highestOf(bucket));
+            }
+        }
+        // Recorded concurrently with the scan
+        return maxNanos();
+    }
+
+    // Values below SUB_BUCKETS have a bucket each, then the SUB_BUCKET_BITS bits after the highest one
+    // pick the bucket within the power of two
+    static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        final var shift = (Long.SIZE - 1 - Long.numberOfLeadingZeros(value)) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+    }
+
+    static long lowestOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        final var shift = bucket / SUB_BUCKETS - 1;
+        return (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+    }
+
+    static long highestOf(int bucket) {
+        return bucket + 1 < BUCKETS ? lowestOf(bucket + 1) - 1 : Long.MAX_VALUE;
+    }
+}
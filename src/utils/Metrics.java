@@ -0,0 +1,261 @@
+package src.utils;
+
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
+import java.util.logging.Level;
+import java.util.logging.LogManager;
+import java.util.logging.Logger;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Counters and latency histograms of the simulation, by name (e.g. "Env.executeAction") and optionally
+ * by tag (an action type or an agent), to find out what is slowing the simulation down.
+ * Each of them is exposed as an MBean of the robotsOnMars JMX domain, and they can be periodically
+ * logged (see {@link #startLogging()}).
+ * Recording costs a map lookup and a few atomic additions, metrics are always on.
+ */
+public final class Metrics {
+
+    public static final String JMX_DOMAIN = "robotsOnMars";
+    /** Logging configuration property: seconds between two metrics log lines, 0 disables them. */
+    public static final String LOG_PERIOD_PROPERTY = "robotsOnMars.metrics.period";
+    private static final long DEFAULT_LOG_PERIOD_S = 10;
+
+    public interface LatencyMXBean {
+        long getCount();
+
+        double getMeanMicros();
+
+        double getP50Micros();
+
+        double getP99Micros();
+
+        double getMaxMicros();
+
+        double getTotalMillis();
+    }
+
+    public interface CounterMXBean {
+        long getCount();
+    }
+
+    // Tag is null for the overall metric
+    private record Key(String name, String tag) {
+    }
+
+    private record Latency(LatencyHistogram histogram) implements LatencyMXBean {
+        public long getCount() {
+            return histogram.count();
+        }
+
+        public double getMeanMicros() {
+            return histogram.meanNanos() / 1e3;
+        }
+
+        public double getP50Micros() {
+            return histogram.percentileNanos(50) / 1e3;
+        }
+
+        public double getP99Micros() {
+            return histogram.percentileNanos(99) / 1e3;
+        }
+
+        public double getMaxMicros() {
+            return histogram.maxNanos() / 1e3;
+        }
+
+        public double getTotalMillis() {
+            return histogram.totalNanos() / 1e6;
+        }
+    }
+
+    private record Counter(LongAdder adder) implements CounterMXBean {
+        public long getCount() {
+            return adder.sum();
+        }
+    }
+
+    private static final Logger logger = Logger.getLogger("robotsOnMars." + Metrics.class.getName());
+    private static final Map<Key, LatencyHistogram> latencies = new ConcurrentHashMap<>();
+    private static final Map<Key, LongAdder> counters = new ConcurrentHashMap<>();
+    private static ScheduledExecutorService logging;
+
+    private Metrics() {
+    }
+
+    public static LatencyHistogram latency(String name) {
+        return latency(name, null);
+    }
+
+    public static LatencyHistogram latency(String name, String tag) {
+        final var key = new Key(name, tag);
+        final var latency = latencies.get(key);
+        if (latency != null) {
+            return latency;
+        }
+        final var created = new LatencyHistogram();
+        final var existing = latencies.putIfAbsent(key, created);
+        if (existing != null) {
+            return existing;
+        }
+        register(key, "Latency", new Latency(created));
+        return created;
+    }
+
+    public static LongAdder counter(String name) {
+        return counter(name, null);
+    }
+
+    public static LongAdder counter(String name, String tag) {
+        final var key = new Key(name, tag);
+        final var counter = counters.get(key);
+        if (counter != null) {
+            return counter;
+        }
+        final var created = new LongAdder();
+        final var existing = counters.putIfAbsent(key, created);
+        if (existing != null) {
+            return existing;
+        }
+        register(key, "Counter", new Counter(created));
+        return created;
+    }
+
+    /** Records the time elapsed since start (taken with System.nanoTime) under the name and each of the tags. */
+    public static void recordSince(long start, String name, String... tags) {
+        final var elapsed = System.nanoTime() - start;
+        latency(name).record(elapsed);
+        for (final var tag : tags) {
+            latency(name, tag).record(elapsed);
+        }
+    }
+
+    /** Adds to the counter with the given name and to its tagged counters. */
+    public static void add(long amount, String name, String... tags) {
+        counter(name).add(amount);
+        for (final var tag : tags) {
+            counter(name, tag).add(amount);
+        }
+    }
+
+    private static void register(Key key, String type, Object bean) {
+        try {
+            final var properties = new Hashtable<String, String>();
+            properties.put("type", type);
+            properties.put("name", quoteIfNeeded(key.name()));
+            if (key.tag() != null) {
+                properties.put("tag", quoteIfNeeded(key.tag()));
+            }
+            final var server = ManagementFactory.getPlatformMBeanServer();
+            final var objectName = new ObjectName(JMX_DOMAIN, properties);
+            // e.g. a previous simulation in the same JVM
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+            server.registerMBean(bean, objectName);
+        } catch (JMException e) {
+            logger.log(Level.WARNING, "Could not expose metric " + key + " through JMX", e);
+        }
+    }
+
+    private static String quoteIfNeeded(String value) {
+        return value.matches("[\\w.\\-]+") ? value : ObjectName.quote(value);
+    }
+
+    /**
+     * Starts logging (at INFO level) a line with every metric and its heaviest tag, with the period set by
+     * {@link #LOG_PERIOD_PROPERTY} in the logging configuration.
+     */
+    synchronized public static void startLogging() {
+        if (logging != null) {
+            return;
+        }
+        var period = DEFAULT_LOG_PERIOD_S;
+        final var property = LogManager.getLogManager().getProperty(LOG_PERIOD_PROPERTY);
+        if (property != null) {
+            try {
+                period = Long.parseLong(property.trim());
+            } catch (NumberFormatException e) {
+                logger.warning("Invalid " + LOG_PERIOD_PROPERTY + ": " + property);
+            }
+        }
+        if (period <= 0) {
+            return;
+        }
+        logging = Executors.newSingleThreadScheduledExecutor(r -> {
+            final var t = new Thread(r, "metrics-log");
+            t.setDaemon(true);
+            return t;
+        });
+        logging.scheduleAtFixedRate(() -> {
+            if (logger.isLoggable(Level.INFO)) {
+                logger.info(summary());
+            }
+        }, period, period, TimeUnit.SECONDS);
+    }
+
+    synchronized public static void stopLogging() {
+        if (logging != null) {
+            logging.shutdownNow();
+            logging = null;
+        }
+    }
+
+    /**
+     * One line with every metric, e.g.
+     * "Env.getPercepts n=120 mean=85us p99=410us max=1.2ms (r3 31%); Mars.failedActions=4 (move 75%)".
+     */
+    public static String summary() {
+        final var parts = new ArrayList<String>();
+        new TreeMap<>(byName(latencies)).forEach((name, overall) -> {
+            final var h = overall.getValue();
+            parts.add(name + " n=" + h.count()
+                    + " mean=" + format(h.meanNanos())
+                    + " p99=" + format(h.percentileNanos(99))
+                    + " max=" + format(h.maxNanos())
+                    + heaviestTag(name, latencies, LatencyHistogram::totalNanos, h.totalNanos()));
+        });
+        new TreeMap<>(byName(counters)).forEach((name, overall) -> {
+            final var sum = overall.getValue().sum();
+            parts.add(name + "=" + sum + heaviestTag(name, counters, LongAdder::sum, sum));
+        });
+        return "metrics: " + String.join("; ", parts);
+    }
+
+    private static <T> Map<String, Map.Entry<Key, T>> byName(Map<Key, T> metrics) {
+        final var overall = new HashMap<String, Map.Entry<Key, T>>();
+        metrics.entrySet().stream()
+                .filter(e -> e.getKey().tag() == null)
+                .forEach(e -> overall.put(e.getKey().name(), e));
+        return overall;
+    }
+
+    private static <T> String heaviestTag(String name, Map<Key, T> metrics, ToLongFunction<T> weight, long total) {
+        return metrics.entrySet().stream()
+                .filter(e -> e.getKey().name().equals(name) && e.getKey().tag() != null)
+                .max(Comparator.comparingLong(e -> weight.applyAsLong(e.getValue())))
+                .filter(e -> total > 0)
+                .map(e -> " (" + e.getKey().tag() + " " + Math.round(100.0 * weight.applyAsLong(e.getValue()) / total)
+                        + "%)")
+                .orElse("");
+    }
+
+    private static String format(double nanos) {
+        if (nanos < 1e3) {
+            return String.format(Locale.ROOT, "%.0fns", nanos);
+        } else if (nanos < 1e6) {
+            return String.format(Locale.ROOT, "%.0fus", nanos / 1e3);
+        } else if (nanos < 1e9) {
+            return String.format(Locale.ROOT, "%.1fms", nanos / 1e6);
+        }
+        return String.format(Locale.ROOT, "%.1fs", nanos / 1e9);
+    }
+}
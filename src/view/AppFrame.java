@@ -1,10 +1,12 @@
 package src.view;
 
 import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
 import java.io.IOException;
+import java.util.*;
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
-import javax.swing.border.LineBorder;
 
 import src.model.Mars;
 import src.model.Rover;
@@ -12,25 +14,39 @@ import src.model.ScientistRover;
 
 public class AppFrame extends JFrame implements ViewModel.Listener {
 
-    private final JPanel leftPanel;
+    private final JList<Rover> roverList;
     private final GridPanel gridPanel;
     private final ViewModel model;
     private final Mars mars;
 
+    // Rovers in the order they showed up and what their rows display, only accessed from the EDT
+    private final DefaultListModel<Rover> rovers = new DefaultListModel<>();
+    private final Map<Rover, Integer> rowOf = new HashMap<>();
+    private final Map<Rover, RoverStatus> displayed = new HashMap<>();
+
     @Override
-    public void viewModelChanged() {
+    public void viewModelChanged(Optional<Mars.Change> change) {
         SwingUtilities.invokeLater(() -> {
-            leftPanel.removeAll();
-
-            mars.rovers().stream().forEach(r -> {
-                JPanel roverRow = createRoverRow(r);
-                leftPanel.add(roverRow);
-                leftPanel.add(Box.createVerticalStrut(10));
+            change.ifPresentOrElse(c -> updateRows(c.rovers()), () -> {
+                updateRows(mars.rovers());
+                // The focused rover may have changed
+                roverList.repaint();
             });
+        });
+    }
 
-            leftPanel.add(Box.createVerticalGlue());
-            leftPanel.revalidate();
-            leftPanel.repaint();
+    /** Adds the new rovers and redraws the rows of those whose status changed. */
+    private void updateRows(Collection<Rover> changed) {
+        changed.forEach(r -> {
+            final var status = RoverStatus.of(r);
+            if (!rowOf.containsKey(r)) {
+                rowOf.put(r, rovers.size());
+                rovers.addElement(r);
+            } else if (!status.equals(displayed.get(r))) {
+                // Setting the same element tells the list that its row changed
+                rovers.set(rowOf.get(r), r);
+            }
+            displayed.put(r, status);
         });
     }
 
@@ -45,71 +61,54 @@ public class AppFrame extends JFrame implements ViewModel.Listener {
         setLocationRelativeTo(null);
 
         // --- Left Panel Setup ---
-        leftPanel = new JPanel();
-        leftPanel.setPreferredSize(new Dimension(250, 0));
-        leftPanel.setBackground(Color.LIGHT_GRAY);
-        leftPanel.setLayout(new BoxLayout(leftPanel, BoxLayout.Y_AXIS));
-        leftPanel.setBorder(new EmptyBorder(10, 10, 10, 10));
+        // Only the visible rows are drawn, by a single reused row
+        final var roverRow = new RoverRow(model);
+        roverList = new JList<>(rovers);
+        roverList.setCellRenderer(roverRow);
+        roverList.setFixedCellHeight(roverRow.getPreferredSize().height);
+        roverList.setFixedCellWidth(230);
+        roverList.setBackground(Color.LIGHT_GRAY);
+        roverList.setBorder(new EmptyBorder(10, 10, 0, 10));
+        roverList.setSelectionModel(new NoSelectionModel());
+        roverList.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                final var index = roverList.locationToIndex(e.getPoint());
+                if (index >= 0 && roverList.getCellBounds(index, index).contains(e.getPoint())) {
+                    model.selectRoverNamed(rovers.get(index).name());
+                }
+            }
+        });
 
         // --- Main Layout ---
         gridPanel = new GridPanel(model, 20);
         JScrollPane scrollPane = new JScrollPane(gridPanel);
-        JScrollPane leftScroll = new JScrollPane(leftPanel);
+        scrollPane.getVerticalScrollBar().setUnitIncrement(16);
+        scrollPane.getHorizontalScrollBar().setUnitIncrement(16);
+        JScrollPane leftScroll = new JScrollPane(roverList);
+        leftScroll.getViewport().setBackground(Color.LIGHT_GRAY);
         JSplitPane splitPane = new JSplitPane(JSplitPane.HORIZONTAL_SPLIT, leftScroll, scrollPane);
 
-        viewModelChanged();
+        viewModelChanged(Optional.empty());
 
         add(splitPane);
     }
 
-    private JPanel createRoverRow(Rover r) {
-        JPanel row = new JPanel(new BorderLayout());
-        row.setBackground(Color.WHITE);
-        row.setBorder(new LineBorder(Color.GRAY, 1));
-        row.setMaximumSize(new Dimension(Integer.MAX_VALUE, 100));
-
-        JPanel dataPanel = new JPanel();
-        dataPanel.setLayout(new BoxLayout(dataPanel, BoxLayout.Y_AXIS));
-        dataPanel.setOpaque(false);
-        dataPanel.setBorder(new EmptyBorder(5, 5, 5, 5));
-
-        JLabel nameLabel = new JLabel(r.name());
-        nameLabel.setFont(new Font("Arial", Font.BOLD, 12));
-        dataPanel.add(nameLabel);
-
-        JLabel batteryLabel = new JLabel("Battery: " + r.battery() + "/" + r.batteryCapacity());
-        dataPanel.add(batteryLabel);
-
-        if (r instanceof ScientistRover s) {
-            // Optional: Change color to distinguish scientists
-            nameLabel.setForeground(new Color(0, 102, 204));
-            JLabel samplesLabel = new JLabel("Samples: " + s.carriedSamples() + "/" + s.samplesCapacity());
-            dataPanel.add(samplesLabel);
+    /** What a row displays about a rover, it is redrawn only when this changes. */
+    private record RoverStatus(int battery, int samples) {
+        static RoverStatus of(Rover r) {
+            return new RoverStatus(r.battery(), r instanceof ScientistRover s ? s.carriedSamples() : 0);
         }
+    }
 
-        // 2. Button Section (Right Side)
-        JPanel buttonPanel = new JPanel(new GridBagLayout()); // Center the button vertically
-        buttonPanel.setOpaque(false);
-        buttonPanel.setBorder(new EmptyBorder(0, 5, 0, 5));
-
-        final var isSelectedRover = model.selectedRover().map(sel -> sel.equals(r)).orElse(false);
-        JToggleButton eyeButton = new JToggleButton("Focus", isSelectedRover);
-        eyeButton.setFocusPainted(false);
-        eyeButton.setToolTipText("View Rover POV");
-        if (isSelectedRover) {
-            eyeButton.setText("Unfocus");
+    // Rows are not selectable, clicking one focuses its rover
+    private static class NoSelectionModel extends DefaultListSelectionModel {
+        @Override
+        public void setSelectionInterval(int index0, int index1) {
         }
 
-        eyeButton.addActionListener(e -> {
-            model.selectRoverNamed(r.name());
-        });
-
-        buttonPanel.add(eyeButton);
-
-        // Add sections to the card
-        row.add(dataPanel, BorderLayout.CENTER);
-        row.add(buttonPanel, BorderLayout.EAST);
-
-        return row;
+        @Override
+        public void addSelectionInterval(int index0, int index1) {
+        }
     }
 }
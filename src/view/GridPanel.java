@@ -1,23 +1,42 @@
 package src.view;
 
 import java.awt.*;
+import java.awt.event.MouseWheelEvent;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
 import java.io.IOException;
 
 import javax.imageio.ImageIO;
 import javax.swing.*;
 
 import src.model.*;
-import src.utils.Tuple;
+import src.utils.Metrics;
 
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.List;
 
+/**
+ * The Mars grid, rendered in tiles which are drawn only when visible and cached.
+ * Zooming out (Ctrl + mouse wheel) draws cells as plain colours and then averages blocks of cells into pixels.
+ */
 class GridPanel extends JPanel implements ViewModel.Listener {
 
+    private static final int TILE_PIXELS = 256;
+    private static final int MAX_CACHED_TILES = 256;
+    // Looks are kept for pages of PAGE_SIDE x PAGE_SIDE cells, 16 MB at most
+    private static final int PAGE_SIDE = 64;
+    private static final int MAX_CACHED_PAGES = 4096;
+    // Smaller cells are drawn as a plain colour since their image would not be recognizable
+    private static final int MIN_SPRITE_PIXELS = 8;
+    // From the closest to the farthest
+    private static final List<Zoom> ZOOMS = List.of(
+            new Zoom(40, 1), new Zoom(20, 1), new Zoom(12, 1), new Zoom(8, 1), new Zoom(4, 1), new Zoom(2, 1),
+            new Zoom(1, 1), new Zoom(1, 2), new Zoom(1, 4), new Zoom(1, 8), new Zoom(1, 16));
+
     private final ViewModel model;
     private final Mars mars;
-    private final int cellSize;
+    private final int side;
+    private int zoom;
     private final Image miningSpotImg;
     private final Image sampleImg;
     private final Image obstacleImg;
@@ -27,16 +46,50 @@ class GridPanel extends JPanel implements ViewModel.Listener {
     private final Color terrainColor = new Color(243, 147, 107);
     private final Color antennaOverlayColor = new Color(0.26f, 0.7f, 0.95f, 0.2f);
 
-    private final Map<Coordinates, CellData> cells = new HashMap<>();
-    private final Map<Coordinates, CellData> changes = new HashMap<>();
+    // The few distinct ways a cell can look (its palette), with the colour used when the cell is too small
+    // for its image. Each cell only stores the index of its look, row by row in pages of cells which are
+    // filled when one of their tiles is rendered. The least recently used are dropped.
+    private final List<CellData> palette = new ArrayList<>();
+    private int[] paletteColors = new int[0];
+    private final Map<CellKey, Byte> paletteIndex = new HashMap<>();
+    private final Map<Long, byte[]> pages = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, byte[]> eldest) {
+            if (size() <= MAX_CACHED_PAGES) {
+                return false;
+            }
+            if (eldest.getValue() == lastPage) {
+                lastPage = null;
+            }
+            return true;
+        }
+    };
+    // Cells are mostly read near the last one
+    private long lastPageKey;
+    private byte[] lastPage;
+    // For each cell size the looks of the palette side by side, scaled and composited once
+    private final Map<Integer, BufferedImage> atlases = new HashMap<>();
+    private final Map<Integer, Integer> atlasLooks = new HashMap<>();
+
+    // Rendered tiles of the current zoom, the least recently used are dropped
+    private final Map<Long, BufferedImage> tiles = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, BufferedImage> eldest) {
+            return size() > MAX_CACHED_TILES;
+        }
+    };
 
-    private BufferedImage gridCanvas;
+    // What was on screen after the last redraw, to find out what to redraw when something changes.
+    // Only accessed from the EDT.
+    private final Map<Rover, Coordinates> drawnRovers = new HashMap<>();
+    private final Map<Coordinates, Rover> drawnRoversAt = new HashMap<>();
+    private Set<HasViewOfMars> drawnAntennas = Set.of();
 
     public GridPanel(ViewModel model, int cellSize) throws IOException {
         this.model = model;
         this.model.addListener(this);
         this.mars = model.mars();
-        this.cellSize = cellSize;
+        this.side = mars.side();
         miningSpotImg = ImageIO.read(getClass().getResource("/mining_spot.png"));
         sampleImg = ImageIO.read(getClass().getResource("/sample.png"));
         obstacleImg = ImageIO.read(getClass().getResource("/obstacle.png"));
@@ -44,52 +97,245 @@ class GridPanel extends JPanel implements ViewModel.Listener {
         simpleRoverImg = ImageIO.read(getClass().getResource("/simple_rover.png"));
         scientistRoverImg = ImageIO.read(getClass().getResource("/scientist_rover.png"));
 
-        int size = mars.side() * cellSize;
-        setPreferredSize(new Dimension(size, size));
         setBackground(Color.WHITE);
+        // Every cell starts unknown, the look at index 0
+        lookOf(new CellKey(null, false, (Rover) null));
 
-        gridCanvas = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+        // The zoom closest to the requested cell size
+        zoom = ZOOMS.indexOf(ZOOMS.stream()
+                .min(Comparator.comparingInt(z -> Math.abs(z.pixelsPerCell() - cellSize)))
+                .orElseThrow());
+        final var size = zoom().sizeOf(side);
+        setPreferredSize(new Dimension(size, size));
+        addMouseWheelListener(this::mouseWheelMoved);
 
-        redraw();
+        redrawAll();
     }
 
     @Override
-    public void viewModelChanged() {
+    public void viewModelChanged(Optional<Mars.Change> change) {
         SwingUtilities.invokeLater(() -> {
-            redraw();
+            change.ifPresentOrElse(this::redraw, this::redrawAll);
         });
     }
 
-    private void redraw() {
-        final var knownArea = model.knownArea();
-        final var antennasToDisplay = new HashSet<Coordinates>();
-        final var roversToDisplay = new HashMap<Coordinates, Rover>();
-        if (model.selectedRover().isPresent()) {
-            final var rover = model.selectedRover().get();
-            antennasToDisplay.addAll(mars.reachableRovers(rover).stream().flatMap(r -> mars.antennaRangeOf(r).stream())
-                    .toList());
-            if (mars.canReachBase(rover)) {
-                antennasToDisplay.addAll(mars.antennaRangeOfBase());
-            }
-            antennasToDisplay.addAll(mars.antennaRangeOf(rover));
-            roversToDisplay.putAll(
-                    mars.cameraRangeOf(rover).stream()
-                            .flatMap(c -> mars.roverAtCoordinates(c).map(r -> Tuple.of(r, c)).stream())
-                            .collect(Collectors.toMap(t -> t._2(), t -> t._1())));
-            roversToDisplay.put(mars.roverCoordinates().get(rover), rover);
+    /** Redraws every cell, when anything may have changed. */
+    private void redrawAll() {
+        takeRoversSnapshot();
+        drawnAntennas = antennasToDisplay();
+        // Looks are computed again for the tiles rendered from now on
+        pages.clear();
+        lastPage = null;
+        tiles.clear();
+        repaint();
+    }
+
+    /** Redraws only the cells affected by the change. */
+    private void redraw(Mars.Change change) {
+        final var start = System.nanoTime();
+        final var dirty = new HashSet<Coordinates>(change.cells());
+
+        // Rovers are drawn where they are now, which may be ahead of the changes received so far.
+        // Whatever is displayed around a rover which moved must be redrawn where it was and where it is.
+        final var before = Map.copyOf(drawnRovers);
+        takeRoversSnapshot();
+        final var selected = model.selectedRover();
+        drawnRovers.forEach((rover, now) -> {
+            final var then = before.get(rover);
+            if (!now.equals(then)) {
+                for (final var position : then == null ? List.of(now) : List.of(then, now)) {
+                    dirty.add(position);
+                    if (drawnAntennas.contains(rover)) {
+                        mars.forEachInRadius(position, rover.antennaRange(), dirty::add);
+                    }
+                    if (selected.map(rover::equals).orElse(false)) {
+                        mars.forEachInRadius(position, rover.cameraRange(), dirty::add);
+                    }
+                }
+            }
+        });
+
+        // Antennas which appeared or disappeared (e.g. rovers getting in or out of reach of the selected one)
+        final var antennas = antennasToDisplay();
+        for (final var h : antennas) {
+            if (!drawnAntennas.contains(h)) {
+                mars.forEachInRadius(positionOf(h), antennaRangeOf(h), dirty::add);
+            }
+        }
+        for (final var h : drawnAntennas) {
+            if (!antennas.contains(h)) {
+                final var position = h instanceof Rover r ? before.getOrDefault(r, positionOf(h)) : positionOf(h);
+                mars.forEachInRadius(position, antennaRangeOf(h), dirty::add);
+            }
+        }
+        drawnAntennas = antennas;
+
+        dirty.forEach(c -> redrawCell(c,
+                antennas.stream().anyMatch(h -> isWithin(c, positionOf(h), antennaRangeOf(h)))));
+        Metrics.recordSince(start, "GridPanel.redraw");
+    }
+
+    /** Everything about rovers is drawn from a single snapshot of where they are. */
+    private void takeRoversSnapshot() {
+        drawnRovers.clear();
+        drawnRovers.putAll(mars.roverCoordinates());
+        drawnRoversAt.clear();
+        drawnRovers.forEach((r, c) -> drawnRoversAt.put(c, r));
+    }
+
+    /** The base and the rovers whose antenna range is displayed. */
+    private Set<HasViewOfMars> antennasToDisplay() {
+        final var antennas = new HashSet<HasViewOfMars>();
+        final var selected = model.selectedRover().filter(drawnRovers::containsKey);
+        if (selected.isPresent()) {
+            final var rover = selected.get();
+            final var position = positionOf(rover);
+            drawnRovers.forEach((r, c) -> {
+                if (isWithin(c, position, rover.antennaRange())) {
+                    antennas.add(r);
+                }
+            });
+            if (isWithin(mars.baseCenterCoordinates(), position, rover.antennaRange())) {
+                antennas.add(mars.base());
+            }
         } else {
-            antennasToDisplay.addAll(mars.rovers().stream().flatMap(r -> mars.antennaRangeOf(r).stream())
-                    .toList());
-            antennasToDisplay.addAll(mars.antennaRangeOfBase());
-            roversToDisplay.putAll(mars.roverCoordinates().entrySet().stream()
-                    .collect(Collectors.toMap(e -> e.getValue(), e -> e.getKey())));
+            antennas.addAll(drawnRovers.keySet());
+            antennas.add(mars.base());
+        }
+        return antennas;
+    }
+
+    private Coordinates positionOf(HasViewOfMars h) {
+        return h instanceof Rover r ? drawnRovers.get(r) : mars.baseCenterCoordinates();
+    }
+
+    private int antennaRangeOf(HasViewOfMars h) {
+        return switch (h) {
+            case Rover r -> r.antennaRange();
+            case Base b -> b.antennaRange();
+            default -> 0;
+        };
+    }
+
+    private static boolean isWithin(Coordinates c, Coordinates center, int radius) {
+        // Rovers may be far apart on huge maps
+        final long dx = c.x() - center.x();
+        final long dy = c.y() - center.y();
+        return dx * dx + dy * dy <= (long) radius * radius;
+    }
+
+    /** The cell in the given column and row, counted from the top left corner of Mars. */
+    private Coordinates coordinatesOf(int col, int row) {
+        return new Coordinates(col - mars.positiveBound(), mars.positiveBound() - row);
+    }
+
+    private void redrawCell(Coordinates c, boolean antenna) {
+        final int col = c.x() + mars.positiveBound(), row = mars.positiveBound() - c.y();
+        final var z = zoom();
+        final var tile = tiles.get(tileKey(col / z.tileCells(), row / z.tileCells()));
+        final var page = cachedPage(pageKeyOf(col, row));
+        if (tile == null && page == null) {
+            // Not displayed, its look is computed when its tile is rendered
+            return;
+        }
+        final var look = lookOf(new CellKey(knownTerrainAt(c), antenna, displayedRoverAt(c)));
+        if (page != null) {
+            final var index = indexInPage(col, row);
+            if (page[index] == look) {
+                return;
+            }
+            page[index] = look;
+        }
+        if (tile != null) {
+            paintCell(tile, col, row);
+        }
+        final var size = Math.max(1, z.pixelsPerCell());
+        repaint(z.toPixels(col), z.toPixels(row), size, size);
+    }
+
+    /** What is displayed about the terrain of a cell, null if unknown. */
+    private Terrain knownTerrainAt(Coordinates c) {
+        if (model.selectedRover().isPresent()) {
+            return model.selectedRover().get().marsView().terrainAt(c) instanceof TerrainView.Known(var t) ? t : null;
+        }
+        return mars.isKnownByAnyRover(c) ? mars.terrainAt(c) : null;
+    }
+
+    private static long pageKeyOf(int col, int row) {
+        return tileKey(col / PAGE_SIDE, row / PAGE_SIDE);
+    }
+
+    private static int indexInPage(int col, int row) {
+        return row % PAGE_SIDE * PAGE_SIDE + col % PAGE_SIDE;
+    }
+
+    /** The look of the cell in the given column and row, computed with the rest of its page if missing. */
+    private byte lookAt(int col, int row) {
+        final var key = pageKeyOf(col, row);
+        var page = cachedPage(key);
+        if (page == null) {
+            page = lookPage(col / PAGE_SIDE, row / PAGE_SIDE);
+            pages.put(key, page);
+            lastPageKey = key;
+            lastPage = page;
+        }
+        return page[indexInPage(col, row)];
+    }
+
+    // Null if the looks of the page are not cached
+    private byte[] cachedPage(long key) {
+        if (lastPage != null && lastPageKey == key) {
+            return lastPage;
+        }
+        final var page = pages.get(key);
+        if (page != null) {
+            lastPageKey = key;
+            lastPage = page;
+        }
+        return page;
+    }
+
+    private byte[] lookPage(int pageCol, int pageRow) {
+        final var page = new byte[PAGE_SIDE * PAGE_SIDE];
+        final int firstCol = pageCol * PAGE_SIDE, firstRow = pageRow * PAGE_SIDE;
+        final int lastCol = Math.min(firstCol + PAGE_SIDE, side), lastRow = Math.min(firstRow + PAGE_SIDE, side);
+        // Only the antennas reaching the page
+        final var first = coordinatesOf(firstCol, firstRow);
+        final var last = coordinatesOf(lastCol - 1, lastRow - 1);
+        final var antennas = drawnAntennas.stream()
+                .filter(h -> positionOf(h).x() + antennaRangeOf(h) >= first.x()
+                        && positionOf(h).x() - antennaRangeOf(h) <= last.x()
+                        && positionOf(h).y() - antennaRangeOf(h) <= first.y()
+                        && positionOf(h).y() + antennaRangeOf(h) >= last.y())
+                .toList();
+        for (int row = firstRow; row < lastRow; row++) {
+            for (int col = firstCol; col < lastCol; col++) {
+                final var c = coordinatesOf(col, row);
+                final var antenna = antennas.stream().anyMatch(h -> isWithin(c, positionOf(h), antennaRangeOf(h)));
+                page[indexInPage(col, row)] = lookOf(new CellKey(knownTerrainAt(c), antenna, displayedRoverAt(c)));
+            }
         }
-        mars.allCoordinates().forEach(coordinates -> {
+        return page;
+    }
+
+    /** The rover displayed in a cell (null if none): the selected one sees only rovers in its camera range. */
+    private Rover displayedRoverAt(Coordinates c) {
+        final var rover = drawnRoversAt.get(c);
+        final var selected = model.selectedRover().filter(drawnRovers::containsKey);
+        if (rover == null || selected.isEmpty()) {
+            return rover;
+        }
+        final var sel = selected.get();
+        return sel.equals(rover) || isWithin(c, positionOf(sel), sel.cameraRange()) ? rover : null;
+    }
+
+    /** Index in the palette of the given look, added if new. */
+    private byte lookOf(CellKey key) {
+        return paletteIndex.computeIfAbsent(key, k -> {
             var cellData = new CellData(Color.GRAY, null, null);
-            if (knownArea.keySet().contains(coordinates)) {
-                final var terrain = knownArea.get(coordinates);
+            if (k.terrain() != null) {
                 cellData = cellData.withColor(terrainColor);
-                switch (terrain) {
+                switch (k.terrain()) {
                     case Terrain.Base() -> cellData = cellData.withImage(baseImg);
                     case Terrain.Obstacle() -> cellData = cellData.withImage(obstacleImg);
                     case Terrain.Sample() -> cellData = cellData.withImage(sampleImg);
@@ -98,67 +344,251 @@ class GridPanel extends JPanel implements ViewModel.Listener {
                     }
                 }
             }
-            if (antennasToDisplay.contains(coordinates)) {
+            if (k.antenna()) {
                 cellData = cellData.withOverlay(antennaOverlayColor);
             }
-            if (roversToDisplay.containsKey(coordinates)) {
-                final var rover = roversToDisplay.get(coordinates);
-                if (rover instanceof SimpleRover) {
-                    cellData = cellData.withImage(simpleRoverImg);
-                } else {
-                    cellData = cellData.withImage(scientistRoverImg);
-                }
-            }
-            if (!cells.getOrDefault(coordinates, new CellData(null, null, null)).equals(cellData)) {
-                changes.put(coordinates, cellData);
-                cells.put(coordinates, cellData);
+            if (k.rover() != null) {
+                cellData = cellData.withImage(k.rover() == SimpleRover.class ? simpleRoverImg : scientistRoverImg);
             }
+            palette.add(cellData);
+            paletteColors = Arrays.copyOf(paletteColors, palette.size());
+            paletteColors[palette.size() - 1] = averageColorOf(cellData);
+            return (byte) (palette.size() - 1);
         });
+    }
 
-        updateCanvas();
-        repaint();
+    /** The colour of a cell when it is too small to draw its image. */
+    private int averageColorOf(CellData data) {
+        final var size = MIN_SPRITE_PIXELS;
+        final var image = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+        final var g = image.createGraphics();
+        drawCell(g, data, 0, 0, size);
+        g.dispose();
+        return average(image.getRGB(0, 0, size, size, null, 0, size));
     }
 
-    private void updateCanvas() {
-        Graphics2D g2 = gridCanvas.createGraphics();
+    private static int average(int[] colors) {
+        if (colors.length == 0) {
+            return 0;
+        }
+        long a = 0, r = 0, g = 0, b = 0;
+        for (final var color : colors) {
+            a += color >>> 24;
+            r += (color >> 16) & 0xff;
+            g += (color >> 8) & 0xff;
+            b += color & 0xff;
+        }
+        final var n = colors.length;
+        return (int) (a / n) << 24 | (int) (r / n) << 16 | (int) (g / n) << 8 | (int) (b / n);
+    }
 
-        for (var entry : changes.entrySet()) {
-            final var coord = entry.getKey();
-            CellData data = entry.getValue();
+    private void drawCell(Graphics2D g, CellData data, int x, int y, int size) {
+        g.setBackground(getBackground());
+        g.clearRect(x, y, size, size);
 
-            final int translatedX = coord.x() + mars.positiveBound();
-            final int translatedY = mars.side() - (coord.y() + mars.positiveBound());
-            int x = translatedX * cellSize;
-            int y = translatedY * cellSize;
+        if (data.color != null) {
+            g.setColor(data.color);
+            g.fillRect(x, y, size, size);
+        }
 
-            g2.setBackground(getBackground());
-            g2.clearRect(x, y, cellSize, cellSize);
+        if (data.image != null) {
+            g.drawImage(data.image, x, y, size, size, null);
+        }
 
-            if (data.color != null) {
-                g2.setColor(data.color);
-                g2.fillRect(x, y, cellSize, cellSize);
+        if (data.overlay != null) {
+            g.setColor(data.overlay);
+            g.fillRect(x, y, size, size);
+        }
+    }
+
+    /** Draws a look at the current zoom by copying it from the atlas, without scaling anything. */
+    private void drawLook(Graphics2D g, byte look, int x, int y) {
+        final var size = zoom().pixelsPerCell();
+        final var sx = look * size;
+        g.drawImage(atlas(size), x, y, x + size, y + size, sx, 0, sx + size, size, null);
+    }
+
+    /** The atlas for the given cell size, looks added since it was built are drawn on it. */
+    private BufferedImage atlas(int size) {
+        var atlas = atlases.get(size);
+        if (atlas == null || atlas.getWidth() < palette.size() * size) {
+            // Room for a few more looks, new ones seldom show up once the simulation is running
+            final var width = (palette.size() + 8) * size;
+            final var config = getGraphicsConfiguration();
+            // Cells are opaque, a compatible opaque image is the fastest to copy from
+            atlas = config != null
+                    ? config.createCompatibleImage(width, size, Transparency.OPAQUE)
+                    : new BufferedImage(width, size, BufferedImage.TYPE_INT_RGB);
+            atlases.put(size, atlas);
+            atlasLooks.put(size, 0);
+        }
+        final int drawn = atlasLooks.get(size);
+        if (drawn < palette.size()) {
+            final var g = atlas.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            for (int i = drawn; i < palette.size(); i++) {
+                drawCell(g, palette.get(i), i * size, 0, size);
             }
+            g.dispose();
+            atlasLooks.put(size, palette.size());
+        }
+        return atlas;
+    }
+
+    private static long tileKey(int tileCol, int tileRow) {
+        return (long) tileCol << 32 | tileRow;
+    }
 
-            if (data.image != null) {
-                g2.drawImage(data.image, x, y, cellSize, cellSize, null);
+    /** The cached tile, rendered if missing. */
+    private BufferedImage tile(int tileCol, int tileRow) {
+        return tiles.computeIfAbsent(tileKey(tileCol, tileRow), k -> renderTile(tileCol, tileRow));
+    }
+
+    private BufferedImage renderTile(int tileCol, int tileRow) {
+        final var z = zoom();
+        final var tileCells = z.tileCells();
+        final var tile = new BufferedImage(z.tilePixels(), z.tilePixels(), BufferedImage.TYPE_INT_ARGB);
+        final int firstCol = tileCol * tileCells, firstRow = tileRow * tileCells;
+        final int lastCol = Math.min(firstCol + tileCells, side), lastRow = Math.min(firstRow + tileCells, side);
+        if (z.pixelsPerCell() >= MIN_SPRITE_PIXELS) {
+            final var g = tile.createGraphics();
+            for (int row = firstRow; row < lastRow; row++) {
+                for (int col = firstCol; col < lastCol; col++) {
+                    drawLook(g, lookAt(col, row), z.toPixels(col - firstCol), z.toPixels(row - firstRow));
+                }
             }
+            g.dispose();
+        } else {
+            // One cell per block of pixels or one block of cells per pixel: the first cell of each block does it
+            final var step = z.cellsPerPixel();
+            for (int row = firstRow; row < lastRow; row += step) {
+                for (int col = firstCol; col < lastCol; col += step) {
+                    paintCell(tile, col, row);
+                }
+            }
+        }
+        return tile;
+    }
 
-            if (data.overlay != null) {
-                g2.setColor(data.overlay);
-                g2.fillRect(x, y, cellSize, cellSize);
+    /** Paints a cell on its tile, or the pixel it falls in when several cells share one. */
+    private void paintCell(BufferedImage tile, int col, int row) {
+        final var z = zoom();
+        final var tileCells = z.tileCells();
+        final int x = z.toPixels(col % tileCells), y = z.toPixels(row % tileCells);
+        if (z.pixelsPerCell() >= MIN_SPRITE_PIXELS) {
+            final var g = tile.createGraphics();
+            drawLook(g, lookAt(col, row), x, y);
+            g.dispose();
+            return;
+        }
+        final var pixels = ((DataBufferInt) tile.getRaster().getDataBuffer()).getData();
+        if (z.cellsPerPixel() == 1) {
+            final var color = paletteColors[lookAt(col, row)];
+            for (int dy = 0; dy < z.pixelsPerCell(); dy++) {
+                Arrays.fill(pixels, (y + dy) * tile.getWidth() + x, (y + dy) * tile.getWidth() + x + z.pixelsPerCell(),
+                        color);
+            }
+        } else {
+            // Downsampled: the average colour of the cells in the block
+            final var step = z.cellsPerPixel();
+            final int firstCol = col - col % step, firstRow = row - row % step;
+            final int lastCol = Math.min(firstCol + step, side), lastRow = Math.min(firstRow + step, side);
+            final var colors = new int[(lastCol - firstCol) * (lastRow - firstRow)];
+            int i = 0;
+            for (int r = firstRow; r < lastRow; r++) {
+                for (int c = firstCol; c < lastCol; c++) {
+                    colors[i++] = paletteColors[lookAt(c, r)];
+                }
             }
+            pixels[y * tile.getWidth() + x] = average(colors);
+        }
+    }
+
+    private Zoom zoom() {
+        return ZOOMS.get(zoom);
+    }
+
+    /** Changes the zoom keeping the cell under the anchor point where it is on screen. */
+    private void setZoom(int newZoom, Point anchor) {
+        final var old = zoom();
+        final var viewport = (JViewport) SwingUtilities.getAncestorOfClass(JViewport.class, this);
+        final var onScreen = viewport == null ? new Point() : SwingUtilities.convertPoint(this, anchor, viewport);
+        final double col = (double) anchor.x * old.cellsPerPixel() / old.pixelsPerCell();
+        final double row = (double) anchor.y * old.cellsPerPixel() / old.pixelsPerCell();
+
+        zoom = newZoom;
+        tiles.clear();
+        final var z = zoom();
+        final var size = z.sizeOf(side);
+        setPreferredSize(new Dimension(size, size));
+        revalidate();
+        if (viewport != null) {
+            viewport.setViewSize(getPreferredSize());
+            final var x = (int) (col * z.pixelsPerCell() / z.cellsPerPixel()) - onScreen.x;
+            final var y = (int) (row * z.pixelsPerCell() / z.cellsPerPixel()) - onScreen.y;
+            viewport.setViewPosition(new Point(Math.max(0, x), Math.max(0, y)));
         }
+        repaint();
+    }
 
-        g2.dispose();
-        changes.clear();
+    private void mouseWheelMoved(MouseWheelEvent e) {
+        if (e.isControlDown()) {
+            final var newZoom = Math.clamp(zoom + e.getWheelRotation(), 0, ZOOMS.size() - 1);
+            if (newZoom != zoom) {
+                setZoom(newZoom, e.getPoint());
+            }
+        } else if (getParent() != null) {
+            // Listening to the wheel stops it from reaching the scroll pane
+            getParent().dispatchEvent(SwingUtilities.convertMouseEvent(this, e, getParent()));
+        }
     }
 
     @Override
     protected void paintComponent(Graphics g) {
         super.paintComponent(g);
 
-        if (gridCanvas != null) {
-            g.drawImage(gridCanvas, 0, 0, null);
+        // Only the tiles which are (partly) visible
+        final var clip = g.getClipBounds() != null ? g.getClipBounds() : new Rectangle(getSize());
+        final var z = zoom();
+        final var tilePixels = z.tilePixels();
+        final var tilesPerSide = Math.ceilDiv(side, z.tileCells());
+        final var lastTileCol = Math.min(tilesPerSide - 1, (clip.x + clip.width - 1) / tilePixels);
+        final var lastTileRow = Math.min(tilesPerSide - 1, (clip.y + clip.height - 1) / tilePixels);
+        for (int tileRow = Math.max(0, clip.y / tilePixels); tileRow <= lastTileRow; tileRow++) {
+            for (int tileCol = Math.max(0, clip.x / tilePixels); tileCol <= lastTileCol; tileCol++) {
+                g.drawImage(tile(tileCol, tileRow), tileCol * tilePixels, tileRow * tilePixels, null);
+            }
+        }
+    }
+
+
+    // Only the kind of rover matters for the cache key
+    private record CellKey(Terrain terrain, boolean antenna, Class<?> rover) {
+        CellKey(Terrain terrain, boolean antenna, Rover rover) {
+            this(terrain, antenna, rover == null ? null : (Class<?>) rover.getClass());
+        }
+    }
+
+    /** A cell takes pixelsPerCell pixels per side, or a pixel covers cellsPerPixel cells per side. */
+    private record Zoom(int pixelsPerCell, int cellsPerPixel) {
+
+        /** Where the given column (or row) starts. */
+        int toPixels(int cells) {
+            return cells * pixelsPerCell / cellsPerPixel;
+        }
+
+        /** Pixels needed to draw the given number of columns (or rows). */
+        int sizeOf(int cells) {
+            return Math.ceilDiv(cells * pixelsPerCell, cellsPerPixel);
+        }
+
+        // Tiles hold whole cells (or blocks of cells) so that each cell is drawn on a single tile
+        int tileCells() {
+            return Math.max(1, TILE_PIXELS / pixelsPerCell) * cellsPerPixel;
+        }
+
+        int tilePixels() {
+            return toPixels(tileCells());
         }
     }
 
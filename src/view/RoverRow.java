@@ -0,0 +1,70 @@
+package src.view;
+
+import java.awt.*;
+import javax.swing.*;
+import javax.swing.border.CompoundBorder;
+import javax.swing.border.EmptyBorder;
+import javax.swing.border.LineBorder;
+
+import src.model.Rover;
+import src.model.ScientistRover;
+
+/**
+ * A row of the rovers list. A single row is reused to draw every visible rover, only its labels change.
+ * The button only shows whether the rover is focused, clicking anywhere on the row (un)focuses it.
+ */
+class RoverRow extends JPanel implements ListCellRenderer<Rover> {
+
+    private static final Color SCIENTIST_COLOR = new Color(0, 102, 204);
+
+    private final ViewModel model;
+    // Not empty so that the row has its final height before drawing any rover
+    private final JLabel nameLabel = new JLabel(" ");
+    private final JLabel batteryLabel = new JLabel(" ");
+    private final JLabel samplesLabel = new JLabel(" ");
+    private final JToggleButton eyeButton = new JToggleButton("Unfocus");
+
+    RoverRow(ViewModel model) {
+        super(new BorderLayout());
+        this.model = model;
+        setBackground(Color.WHITE);
+        // The gap between rows is part of the row
+        setBorder(new CompoundBorder(new EmptyBorder(0, 0, 10, 0), new LineBorder(Color.GRAY, 1)));
+
+        JPanel dataPanel = new JPanel();
+        dataPanel.setLayout(new BoxLayout(dataPanel, BoxLayout.Y_AXIS));
+        dataPanel.setOpaque(false);
+        dataPanel.setBorder(new EmptyBorder(5, 5, 5, 5));
+        nameLabel.setFont(new Font("Arial", Font.BOLD, 12));
+        dataPanel.add(nameLabel);
+        dataPanel.add(batteryLabel);
+        // Blank for simple rovers so that every row has the same height
+        dataPanel.add(samplesLabel);
+
+        JPanel buttonPanel = new JPanel(new GridBagLayout()); // Center the button vertically
+        buttonPanel.setOpaque(false);
+        buttonPanel.setBorder(new EmptyBorder(0, 5, 0, 5));
+        eyeButton.setFocusPainted(false);
+        // Sized for the longest text
+        eyeButton.setPreferredSize(eyeButton.getPreferredSize());
+        buttonPanel.add(eyeButton);
+
+        add(dataPanel, BorderLayout.CENTER);
+        add(buttonPanel, BorderLayout.EAST);
+    }
+
+    @Override
+    public Component getListCellRendererComponent(JList<? extends Rover> list, Rover r, int index,
+            boolean isSelected, boolean cellHasFocus) {
+        nameLabel.setText(r.name());
+        nameLabel.setForeground(r instanceof ScientistRover ? SCIENTIST_COLOR : Color.BLACK);
+        batteryLabel.setText("Battery: " + r.battery() + "/" + r.batteryCapacity());
+        samplesLabel.setText(
+                r instanceof ScientistRover s ? "Samples: " + s.carriedSamples() + "/" + s.samplesCapacity() : " ");
+
+        final var isSelectedRover = model.selectedRover().map(sel -> sel.equals(r)).orElse(false);
+        eyeButton.setSelected(isSelectedRover);
+        eyeButton.setText(isSelectedRover ? "Unfocus" : "Focus");
+        return this;
+    }
+}
@@ -1,13 +1,15 @@
 package src.view;
 
 import java.util.*;
-import java.util.stream.Collectors;
 
 import src.model.*;
 
 public class ViewModel implements Mars.Listener {
     public static interface Listener {
-        public void viewModelChanged();
+        /**
+         * @param change what changed on Mars, empty if anything may have changed (e.g. a rover was selected)
+         */
+        public void viewModelChanged(Optional<Mars.Change> change);
     }
 
     private final Mars mars;
@@ -39,19 +41,11 @@ public class ViewModel implements Mars.Listener {
         } else {
             this.selectedRover = mars.rover(name);
         }
-        informListeners();
+        informListeners(Optional.empty());
     }
 
-    public Map<Coordinates, Terrain> knownArea() {
-        return selectedRover()
-                .map(r -> r.marsView().knownTerrain().entrySet().stream()
-                        .collect(Collectors.toMap(e -> e.getKey(), e -> e.getValue().terrain())))
-                .orElse(mars().knownArea().stream()
-                        .collect(Collectors.toMap(c -> c, c -> mars().terrainAt(c))));
-    }
-
-    private void informListeners() {
-        listeners.stream().forEach(Listener::viewModelChanged);
+    private void informListeners(Optional<Mars.Change> change) {
+        listeners.stream().forEach(l -> l.viewModelChanged(change));
     }
 
     public void addListener(Listener l) {
@@ -63,7 +57,7 @@ public class ViewModel implements Mars.Listener {
     }
 
     @Override
-    public void marsUpdated() {
-        informListeners();
+    public void marsUpdated(Mars.Change change) {
+        informListeners(Optional.of(change));
     }
 }